@@ -0,0 +1,386 @@
+package com.javassg.build;
+
+import com.javassg.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 静的ファイルのフィンガープリント（内容のハッシュを含む名前）と参照の書き換え
+ *
+ * 出力された静的ファイルごとに {@code css/site.css} → {@code css/site.1a2b3c4d.css} のような
+ * 内容のハッシュを含む名前の複製を作る。元のファイルも残すため、書き換えられない参照もそのまま動く。
+ * ハッシュには変更検出で計算済みのソースのハッシュを使い、ファイルを読み直さない。
+ * CSSは {@code url()} と {@code @import} の参照を先に書き換えてからハッシュを計算するため、
+ * 参照先の画像やフォントが変わるとCSSの名前も変わる。
+ * 名前が内容から決まるので、ハッシュ付きのファイルは {@code Cache-Control: immutable} で配信できる。
+ */
+final class AssetFingerprints {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetFingerprints.class);
+
+    private static final Set<String> FINGERPRINTED_EXTENSIONS = Set.of(
+        "css", "js", "mjs", "png", "jpg", "jpeg", "gif", "svg", "webp", "avif", "woff", "woff2", "ttf", "otf", "eot");
+    private static final int HASH_LENGTH = 8;
+    private static final Pattern CSS_REFERENCE = Pattern.compile(
+        "url\\(\\s*(['\"]?)([^'\")\\s]+)\\1\\s*\\)|@import\\s+(['\"])([^'\"]+)\\3");
+    private static final Pattern URL_TOKEN = Pattern.compile("[^\\s,]+");
+    private static final Pattern SCHEME = Pattern.compile("[a-zA-Z][a-zA-Z0-9+.-]*:");
+
+    static final AssetFingerprints NONE = new AssetFingerprints(Map.of(), Map.of(), SiteLocation.UNKNOWN);
+
+    private final Map<String, String> assets;
+    private final Map<String, String> outputsBySource;
+    private final SiteLocation site;
+
+    private AssetFingerprints(Map<String, String> assets, Map<String, String> outputsBySource, SiteLocation site) {
+        this.assets = assets;
+        this.outputsBySource = outputsBySource;
+        this.site = site;
+    }
+
+    /**
+     * 出力ディレクトリにコピー済みの静的ファイルに、ハッシュ付きの名前の複製を作る
+     *
+     * @param sourceHashes 入力ファイルのキーと内容のハッシュ（変更検出の結果）
+     * @param siteUrl      サイトのURL。このURLで始まる絶対URLの参照も書き換える
+     */
+    static AssetFingerprints create(Path staticDir, Path outputDir, List<SourceFile> staticFiles,
+                                    Map<String, String> sourceHashes, String siteUrl) throws IOException {
+        Map<String, SourceFile> candidates = new TreeMap<>();
+        for (SourceFile file : staticFiles) {
+            Path relative = staticDir.relativize(file.path());
+            String logical = toUrlPath(relative);
+            if (FINGERPRINTED_EXTENSIONS.contains(extension(logical))
+                    && Files.isRegularFile(outputDir.resolve(relative.toString()))) {
+                candidates.put(logical, file);
+            }
+        }
+
+        Builder builder = new Builder(outputDir, candidates, new AssetFingerprints(
+            new TreeMap<>(), new HashMap<>(), SiteLocation.parse(siteUrl)));
+
+        // CSSから参照される画像やフォントの名前を先に決める
+        for (Map.Entry<String, SourceFile> candidate : candidates.entrySet()) {
+            if (!isCss(candidate.getKey())) {
+                builder.fingerprintFile(candidate.getKey(), candidate.getValue(), sourceHashes.get(candidate.getValue().key()));
+            }
+        }
+        for (String logical : candidates.keySet()) {
+            if (isCss(logical)) {
+                builder.fingerprintCss(logical);
+            }
+        }
+
+        logger.info("アセットのフィンガープリント: {}件 (新規作成 {}件)", builder.result.assets.size(), builder.created);
+        return builder.result;
+    }
+
+    boolean isEmpty() {
+        return assets.isEmpty();
+    }
+
+    /**
+     * 論理名（静的ディレクトリからの相対パス）とハッシュ付きの名前の対応
+     */
+    Map<String, String> assets() {
+        return Collections.unmodifiableMap(assets);
+    }
+
+    /**
+     * 静的ファイルのソースから作ったハッシュ付きの出力（出力ディレクトリからの相対パス）
+     */
+    String fingerprintedOutput(SourceFile source) {
+        return outputsBySource.get(source.key());
+    }
+
+    /**
+     * 対応表全体のハッシュ。いずれかのアセットの名前が変わると値が変わる。
+     */
+    String version() {
+        List<String> parts = new ArrayList<>();
+        assets.forEach((logical, fingerprinted) -> parts.add(logical + "=" + fingerprinted));
+        return ContentHash.combine(parts);
+    }
+
+    /**
+     * 出力ファイルに書き込むHTMLの参照を書き換える{@link Appendable}を返す
+     *
+     * @param output 出力ディレクトリからの相対パス。相対URLはこのファイルの位置から解決する
+     */
+    HtmlAssetRewriter htmlRewriter(String output, Appendable out) {
+        String path = output.replace('\\', '/');
+        return new HtmlAssetRewriter(out, value -> rewriteUrls(value, path.substring(0, path.lastIndexOf('/') + 1)));
+    }
+
+    /**
+     * 属性値に含まれるURL（{@code srcset} のように複数並んでいてもよい）をハッシュ付きの名前に書き換える
+     */
+    String rewriteUrls(String value, String baseDir) {
+        if (assets.isEmpty() || value.indexOf('.') < 0) {
+            return value;
+        }
+        return URL_TOKEN.matcher(value).replaceAll(match -> {
+            String rewritten = rewriteUrl(match.group(), baseDir);
+            return Matcher.quoteReplacement(rewritten != null ? rewritten : match.group());
+        });
+    }
+
+    /**
+     * @param baseDir 参照元のファイルがあるディレクトリ（サイトのルートからの相対パスで、末尾は {@code /}）
+     * @return 書き換えたURL。フィンガープリントを付けたアセットへの参照でない場合は null
+     */
+    String rewriteUrl(String url, String baseDir) {
+        String logical = resolve(url, baseDir);
+        String fingerprinted = logical != null ? assets.get(logical) : null;
+        if (fingerprinted == null) {
+            return null;
+        }
+        int end = pathEnd(url);
+        String path = url.substring(0, end);
+        return path.substring(0, path.lastIndexOf('/') + 1)
+            + fingerprinted.substring(fingerprinted.lastIndexOf('/') + 1)
+            + url.substring(end);
+    }
+
+    /**
+     * URLを静的ディレクトリからの相対パスに解決する。サイトの外を指す場合は null
+     */
+    private String resolve(String url, String baseDir) {
+        String path = url.substring(0, pathEnd(url));
+        if (path.isEmpty() || path.endsWith("/") || path.startsWith("//")) {
+            return null;
+        }
+
+        String relative;
+        if (SCHEME.matcher(path).lookingAt()) {
+            String prefix = site.origin() != null ? site.origin() + site.path() : null;
+            if (prefix == null || !path.startsWith(prefix)) {
+                return null;
+            }
+            relative = path.substring(prefix.length());
+        } else if (path.startsWith("/")) {
+            if (!path.startsWith(site.path())) {
+                return null;
+            }
+            relative = path.substring(site.path().length());
+        } else {
+            relative = baseDir + path;
+        }
+        return normalize(relative);
+    }
+
+    /**
+     * CSSの {@code url()} と {@code @import} の参照を書き換える
+     */
+    private String rewriteCss(String css, String baseDir) {
+        Matcher matcher = CSS_REFERENCE.matcher(css);
+        StringBuilder result = new StringBuilder(css.length());
+        int last = 0;
+        while (matcher.find()) {
+            int group = matcher.group(2) != null ? 2 : 4;
+            String rewritten = rewriteUrl(matcher.group(group), baseDir);
+            if (rewritten != null) {
+                result.append(css, last, matcher.start(group)).append(rewritten);
+                last = matcher.end(group);
+            }
+        }
+        return result.append(css, last, css.length()).toString();
+    }
+
+    private List<String> cssReferences(String css, String baseDir) {
+        List<String> references = new ArrayList<>();
+        Matcher matcher = CSS_REFERENCE.matcher(css);
+        while (matcher.find()) {
+            String logical = resolve(matcher.group(matcher.group(2) != null ? 2 : 4), baseDir);
+            if (logical != null) {
+                references.add(logical);
+            }
+        }
+        return references;
+    }
+
+    private static String normalize(String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) {
+                    return null;
+                }
+                segments.removeLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    private static int pathEnd(String url) {
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    private static String fingerprintedPath(String logical, String hash) {
+        int dot = logical.lastIndexOf('.');
+        return logical.substring(0, dot) + "." + hash.substring(0, HASH_LENGTH) + logical.substring(dot);
+    }
+
+    private static String toUrlPath(Path relative) {
+        List<String> names = new ArrayList<>();
+        relative.forEach(name -> names.add(name.toString()));
+        return String.join("/", names);
+    }
+
+    private static String extension(String logical) {
+        int dot = logical.lastIndexOf('.');
+        return dot > logical.lastIndexOf('/') + 1 ? logical.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static boolean isCss(String logical) {
+        return extension(logical).equals("css");
+    }
+
+    /**
+     * フィンガープリントの作成中の状態
+     */
+    private static final class Builder {
+
+        private final Path outputDir;
+        private final Map<String, SourceFile> candidates;
+        private final AssetFingerprints result;
+        private final Set<String> inProgress = new HashSet<>();
+        private boolean linkable = true;
+        private int created;
+
+        Builder(Path outputDir, Map<String, SourceFile> candidates, AssetFingerprints result) {
+            this.outputDir = outputDir;
+            this.candidates = candidates;
+            this.result = result;
+        }
+
+        /**
+         * 内容を書き換えないファイルは、出力済みのファイルをハッシュ付きの名前でハードリンクする
+         */
+        void fingerprintFile(String logical, SourceFile source, String hash) throws IOException {
+            Path file = outputDir.resolve(logical);
+            if (hash == null || hash.isEmpty()) {
+                hash = ContentHash.of(file);
+            }
+            String fingerprinted = fingerprintedPath(logical, hash);
+            Path target = outputDir.resolve(fingerprinted);
+            // 名前が内容から決まるため、既にあるファイルは同じ内容とみなす
+            if (!Files.exists(target)) {
+                linkOrCopy(file, target);
+                created++;
+            }
+            record(logical, source, fingerprinted);
+        }
+
+        /**
+         * CSSは参照先のCSSを先に処理し、参照を書き換えた内容のハッシュで名前を決める。
+         * 循環する {@code @import} は、後から処理する側の参照を書き換えずに残す。
+         */
+        void fingerprintCss(String logical) throws IOException {
+            if (result.assets.containsKey(logical) || !inProgress.add(logical)) {
+                return;
+            }
+            String baseDir = logical.substring(0, logical.lastIndexOf('/') + 1);
+            // ISO-8859-1はバイトと文字が1対1に対応するため、文字コードに関係なく参照以外のバイトを変えずに戻せる
+            String css = new String(Files.readAllBytes(outputDir.resolve(logical)), StandardCharsets.ISO_8859_1);
+            for (String reference : result.cssReferences(css, baseDir)) {
+                if (isCss(reference) && candidates.containsKey(reference)) {
+                    fingerprintCss(reference);
+                }
+            }
+
+            byte[] content = result.rewriteCss(css, baseDir).getBytes(StandardCharsets.ISO_8859_1);
+            String fingerprinted = fingerprintedPath(logical, ContentHash.of(content));
+            if (SkipUnchangedChannel.write(outputDir.resolve(fingerprinted), content)) {
+                created++;
+            }
+            record(logical, candidates.get(logical), fingerprinted);
+            inProgress.remove(logical);
+        }
+
+        private void record(String logical, SourceFile source, String fingerprinted) {
+            result.assets.put(logical, fingerprinted);
+            result.outputsBySource.put(source.key(), Path.of(fingerprinted).toString());
+        }
+
+        private void linkOrCopy(Path file, Path target) throws IOException {
+            if (linkable) {
+                try {
+                    Files.createLink(target, file);
+                    return;
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    logger.debug("ハードリンクを作成できないため、以降はコピーします: {}", e.getMessage());
+                    linkable = false;
+                }
+            }
+            // 書きかけのファイルがハッシュ付きの名前で残らないよう、一時ファイルにコピーしてから名前を変える
+            Path temporary = target.resolveSibling("." + target.getFileName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.copy(file, temporary, StandardCopyOption.COPY_ATTRIBUTES);
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    // Record classes for return types
+
+    /**
+     * @param origin サイトのオリジン（例: {@code https://example.com}）。不明な場合は null
+     * @param path   サイトのルートのパス（末尾は {@code /}）
+     */
+    private record SiteLocation(String origin, String path) {
+        static final SiteLocation UNKNOWN = new SiteLocation(null, "/");
+
+        static SiteLocation parse(String siteUrl) {
+            if (siteUrl == null || siteUrl.isBlank()) {
+                return UNKNOWN;
+            }
+            try {
+                URI uri = URI.create(siteUrl.trim());
+                String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+                String origin = uri.getScheme() != null && uri.getRawAuthority() != null
+                    ? uri.getScheme() + "://" + uri.getRawAuthority() : null;
+                return new SiteLocation(origin, path.endsWith("/") ? path : path + "/");
+            } catch (IllegalArgumentException e) {
+                logger.warn("サイトURLを解析できないため、絶対URLの参照は書き換えません: {}", siteUrl);
+                return UNKNOWN;
+            }
+        }
+    }
+}
@@ -1,13 +1,12 @@
 package com.javassg.build;
 
+import com.javassg.util.ContentHash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -295,24 +294,7 @@ public class AssetPipeline {
     }
     
     public String calculateFileHash(Path file) throws IOException {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] fileBytes = Files.readAllBytes(file);
-            byte[] hash = digest.digest(fileBytes);
-            
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256アルゴリズムが利用できません", e);
-        }
+        return ContentHash.of(file);
     }
     
     public void processCssWithVersioning(Path sourceDir, Path outputDir) throws IOException {
@@ -3,11 +3,17 @@ package com.javassg.build;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javassg.cache.CacheManager;
 import com.javassg.model.*;
+import com.javassg.parser.MarkdownFile;
 import com.javassg.parser.MarkdownParser;
+import com.javassg.plugin.PluginManager;
+import com.javassg.template.FilterRegistry;
+import com.javassg.util.ContentHash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
@@ -15,11 +21,23 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class BuildEngine implements BuildEngineInterface {
     
     private static final Logger logger = LoggerFactory.getLogger(BuildEngine.class);
+    private static final String PERSISTENT_CACHE_DIRECTORY = "cache";
+    private static final String ASSET_MANIFEST_FILE = "manifest.json";
+    private static final String SEARCH_INDEX_FILE = "search-index.json";
+    private static final String SITEMAP_FILE = "sitemap.xml";
+    private static final String RSS_FILE = "rss.xml";
     
     private final SiteConfig siteConfig;
     private final CacheManager cacheManager;
@@ -43,10 +61,17 @@ public class BuildEngine implements BuildEngineInterface {
     
     // CLI用の簡易コンストラクタ
     public BuildEngine(SiteConfig siteConfig, Path workingDir) {
+        this(siteConfig, workingDir, new PluginManager(siteConfig));
+    }
+    
+    public BuildEngine(SiteConfig siteConfig, Path workingDir, PluginManager pluginManager) {
+        // フィルターはテンプレートのコンパイル時に束縛されるため、最初のコンパイルより前に登録する
+        pluginManager.registerTemplateFilters(FilterRegistry.global());
         this.siteConfig = siteConfig;
         this.cacheManager = new CacheManager();
         this.markdownParser = new MarkdownParser();
-        this.staticFileProcessor = new StaticFileProcessor();
+        this.staticFileProcessor = new StaticFileProcessor(siteConfig.getParallelism(),
+                                                           siteConfig.isStaticFileLinkingEnabled());
         this.htmlGenerator = new HtmlGenerator(siteConfig, this.cacheManager);
         this.objectMapper = new ObjectMapper();
     }
@@ -55,8 +80,17 @@ public class BuildEngine implements BuildEngineInterface {
         return buildInternal(false, false, false);
     }
     
-    public BuildResult buildIncremental(LocalDateTime lastBuild) {
-        return buildInternal(true, false, false, lastBuild);
+    @Override
+    public CacheManager.WarmUpResult warmUp() {
+        if (siteConfig.isPersistentCacheEnabled()) {
+            cacheManager.enablePersistence(getCacheDirectory().resolve(PERSISTENT_CACHE_DIRECTORY));
+        }
+        return cacheManager.warmUp(getContentDirectory(), getTemplatesDirectory(), markdownParser,
+                                   siteConfig.getParallelism());
+    }
+    
+    public BuildResult buildIncremental() {
+        return buildInternal(true, false, false);
     }
     
     public BuildResult buildWithDrafts() {
@@ -71,10 +105,11 @@ public class BuildEngine implements BuildEngineInterface {
         return buildInternal(false, false, false);
     }
     
-    private BuildResult buildInternal(boolean incremental, boolean includeDrafts, boolean production, LocalDateTime... lastBuild) {
+    private synchronized BuildResult buildInternal(boolean incremental, boolean includeDrafts, boolean production) {
         long startTime = System.currentTimeMillis();
         List<String> errors = new ArrayList<>();
         List<String> warnings = new ArrayList<>();
+        OutputStaging staging = null;
         
         try {
             logger.info("ビルドを開始します (incremental={}, drafts={}, production={})", incremental, includeDrafts, production);
@@ -85,30 +120,99 @@ public class BuildEngine implements BuildEngineInterface {
             Path contentDir = getContentDirectory();
             Path templatesDir = getTemplatesDirectory();
             Path staticDir = getStaticDirectory();
-            Path outputDir = getOutputDirectory();
-            
-            // 出力ディレクトリの準備
-            if (!incremental) {
-                clean();
+            if (siteConfig.isStagedOutputEnabled()) {
+                // 公開中の出力には触れず、前回の出力をリンクした作業ディレクトリに生成する
+                staging = OutputStaging.prepare(getOutputDirectory());
             }
+            Path outputDir = staging != null ? staging.directory() : getOutputDirectory();
+            Path manifestPath = getManifestPath();
+            if (siteConfig.isPersistentCacheEnabled()) {
+                cacheManager.enablePersistence(getCacheDirectory().resolve(PERSISTENT_CACHE_DIRECTORY));
+            }
+            
+            // 出力ディレクトリの準備（フルビルドでも既存の出力は消さず、内容が変わったファイルだけを書き換える）
             Files.createDirectories(outputDir);
             
+            // 入力ファイルの走査と前回ビルドとの差分検出
+            BuildManifest previousManifest = BuildManifest.load(manifestPath);
+            
+            List<SourceFile> pageFiles = scanSources(contentDir,
+                file -> file.toString().endsWith(".md") && !file.getParent().endsWith("posts"));
+            List<SourceFile> postFiles = scanSources(contentDir.resolve("posts"),
+                file -> file.toString().endsWith(".md"));
+            List<SourceFile> templateFiles = scanSources(templatesDir, file -> file.toString().endsWith(".html"));
+            List<SourceFile> staticFiles = scanSources(staticDir, file -> true);
+            
+            List<SourceFile> inputs = new ArrayList<>();
+            inputs.addAll(pageFiles);
+            inputs.addAll(postFiles);
+            inputs.addAll(templateFiles);
+            inputs.addAll(staticFiles);
+            
+            InputChanges changes = detectChanges(previousManifest, inputs);
+            
+            // 静的ファイルの処理（前回の記録がある増分ビルドでは、内容が変わったファイルだけをコピーする）
+            StaticFileProcessor.ProcessingStatistics staticStats = incremental && !previousManifest.isEmpty()
+                ? staticFileProcessor.syncStaticFiles(staticDir, outputDir, staticFiles, changes.changed())
+                : staticFileProcessor.processStaticFiles(staticDir, outputDir);
+            
+            // アセットのフィンガープリント（HTMLから参照する名前が決まるため、HTMLの生成より先に行う）
+            AssetFingerprints fingerprints = siteConfig.isAssetFingerprintingEnabled()
+                ? AssetFingerprints.create(staticDir, outputDir, staticFiles, changes.hashes(), siteConfig.getUrl())
+                : AssetFingerprints.NONE;
+            String buildMode = buildMode(includeDrafts, production, fingerprints);
+            
+            // 前回の記録がない場合やビルドモード（アセットの名前を含む）が異なる場合は全出力を再生成する
+            boolean fullRender = !incremental
+                || previousManifest.isEmpty()
+                || !buildMode.equals(previousManifest.getBuildMode());
+            
             // テンプレートの読み込み
-            loadTemplates(templatesDir);
+            List<Template> templates = loadTemplates(templatesDir, templateFiles, changedTemplateNames(changes, templatesDir));
+            
+            // 変更・削除されたコンテンツと、それに依存するレンダリング結果のキャッシュを無効化
+            for (String source : changes.changedOrRemovedSources()) {
+                if (source.endsWith(".md")) {
+                    cacheManager.invalidateContentAndRelated(
+                        markdownParser.generateSlug(Paths.get(source).getFileName().toString()));
+                }
+            }
             
             // コンテンツの解析
-            List<Page> pages = loadPages(contentDir, incremental ? lastBuild[0] : null);
-            List<Post> posts = loadPosts(contentDir.resolve("posts"), includeDrafts, incremental ? lastBuild[0] : null);
+            List<LoadedContent<Page>> loadedPages = loadPages(pageFiles, changes);
+            List<LoadedContent<Post>> loadedPosts = loadPosts(postFiles, includeDrafts, changes);
+            List<Page> pages = loadedPages.stream().map(LoadedContent::content).toList();
+            List<Post> posts = loadedPosts.stream().map(LoadedContent::content).toList();
             
-            // 静的ファイルの処理
-            StaticFileProcessor.ProcessingStatistics staticStats = 
-                staticFileProcessor.processStaticFiles(staticDir, outputDir);
+            // 依存グラフから再生成が必要な出力を決定する
+            List<PlannedOutput> plannedOutputs = planHtmlOutputs(loadedPages, loadedPosts, changes.hashes());
+            DependencyGraph dependencyGraph = buildDependencyGraph(plannedOutputs, templates, loadedPosts);
+            Set<String> affectedOutputs = fullRender ? Set.of() : findAffectedOutputs(
+                previousManifest.getDependencyGraph(), dependencyGraph, changedNodes(changes, templatesDir));
+            List<PlannedOutput> outputsToRender = plannedOutputs.stream()
+                .filter(output -> fullRender
+                    || affectedOutputs.contains(output.output())
+                    || !Files.exists(outputDir.resolve(output.output())))
+                .toList();
+            
+            if (incremental) {
+                logger.info("増分ビルド: 変更{}件, 削除{}件, 再生成{}/{}件", changes.changed().size(),
+                           changes.removed().size(), outputsToRender.size(), plannedOutputs.size());
+            }
             
             // HTMLの生成
-            int generatedFiles = generateAllHtml(pages, posts, outputDir, production);
+            HtmlRenderPipeline.PipelineResult htmlResult = renderHtml(outputsToRender, outputDir, production, fingerprints);
+            int generatedFiles = htmlResult.writtenFiles();
+            
+            // ビルドマニフェストの更新と、ソースが無くなった出力の削除
+            BuildManifest manifest = createManifest(buildMode, inputs, changes, loadedPages, loadedPosts,
+                                                    staticFiles, staticDir, fingerprints, dependencyGraph);
+            removeOrphanedOutputs(previousManifest, manifest, outputDir);
+            manifest.save(manifestPath);
+            cacheManager.flushPersistence();
             
             // マニフェストファイルの生成
-            generateAssetManifest(outputDir, staticStats);
+            generateAssetManifest(outputDir, staticStats, fingerprints);
             
             // 検索インデックスの生成
             generateSearchIndex(pages, posts, outputDir);
@@ -116,6 +220,11 @@ public class BuildEngine implements BuildEngineInterface {
             // サイトマップとRSSの生成
             generateSitemapAndRss(pages, posts, outputDir);
             
+            // フルビルドでは今回のビルドで生成しなかったファイルを出力ディレクトリから取り除く
+            if (!incremental) {
+                removeStaleOutputs(manifest, outputDir);
+            }
+            
             long buildTime = System.currentTimeMillis() - startTime;
             
             BuildStatistics stats = new BuildStatistics(
@@ -123,9 +232,14 @@ public class BuildEngine implements BuildEngineInterface {
                 pages.size(), // contentFiles
                 staticStats.processedFiles(), // staticFiles
                 getTemplateCount(), // templateFiles
-                calculateOutputSize(outputDir) // outputSize
+                calculateOutputSize(outputDir), // outputSize
+                htmlResult.timings() // htmlStageTimings
             );
             
+            if (staging != null) {
+                staging.publish();
+            }
+            
             logger.info("ビルド完了: {}ms, {}ページ, {}投稿, {}ファイル生成", 
                        buildTime, pages.size(), posts.size(), generatedFiles);
             
@@ -135,7 +249,7 @@ public class BuildEngine implements BuildEngineInterface {
                 pages.size(),
                 posts.size(),
                 generatedFiles,
-                incremental ? getModifiedFileCount(lastBuild[0]) : 0,
+                incremental ? changes.modifiedCount() : 0,
                 incremental,
                 production,
                 stats,
@@ -147,6 +261,9 @@ public class BuildEngine implements BuildEngineInterface {
             long buildTime = System.currentTimeMillis() - startTime;
             logger.error("ビルドエラー", e);
             errors.add("ビルドエラー: " + e.getMessage());
+            if (staging != null) {
+                staging.discard();
+            }
             
             return new BuildResult(
                 false, // success
@@ -164,7 +281,9 @@ public class BuildEngine implements BuildEngineInterface {
     public void clean() throws IOException {
         Path outputDir = getOutputDirectory();
         if (Files.exists(outputDir)) {
-            Files.walkFileTree(outputDir, new SimpleFileVisitor<Path>() {
+            // 出力ディレクトリが入れ替え用のシンボリックリンクの場合はリンク先の中身を削除する
+            Path root = outputDir.toRealPath();
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
                 @Override
                 public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                     Files.delete(file);
@@ -173,7 +292,7 @@ public class BuildEngine implements BuildEngineInterface {
                 
                 @Override
                 public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                    if (!dir.equals(outputDir)) {
+                    if (!dir.equals(root)) {
                         Files.delete(dir);
                     }
                     return FileVisitResult.CONTINUE;
@@ -210,7 +329,7 @@ public class BuildEngine implements BuildEngineInterface {
                         // 変更を検知したら増分ビルドを実行
                         CompletableFuture.runAsync(() -> {
                             try {
-                                buildIncremental(LocalDateTime.now().minusMinutes(1));
+                                buildIncremental();
                             } catch (Exception e) {
                                 logger.error("増分ビルドエラー", e);
                             }
@@ -257,180 +376,639 @@ public class BuildEngine implements BuildEngineInterface {
         }
     }
     
-    private void loadTemplates(Path templatesDir) throws IOException {
+    /**
+     * テンプレートを読み込んでコンパイル済みの形でキャッシュする。
+     * 変更されたテンプレートとそれをパーシャルとして参照するテンプレートだけを無効化し、
+     * キャッシュに残っているものは読み直さずに再利用する。
+     */
+    private List<Template> loadTemplates(Path templatesDir, List<SourceFile> templateFiles,
+                                         Set<String> changedTemplates) throws IOException {
+        List<Template> templates = new ArrayList<>();
+        
         if (!Files.exists(templatesDir)) {
             logger.warn("テンプレートディレクトリが存在しません: {}", templatesDir);
-            return;
+            return templates;
+        }
+        
+        for (String name : changedTemplates) {
+            cacheManager.invalidateTemplateAndDependents(name);
+        }
+        
+        for (SourceFile file : templateFiles) {
+            String name = templateName(templatesDir, file.path());
+            
+            Optional<Template> cached = cacheManager.getTemplate(name);
+            if (cached.isPresent()) {
+                templates.add(cached.get());
+                continue;
+            }
+            
+            String content = Files.readString(file.path());
+            Template template = new Template(name, content);
+            
+            cacheManager.cacheTemplate(name, template);
+            cacheManager.getCompiledTemplate(name).ifPresent(compiled -> {
+                for (String partial : compiled.partials()) {
+                    cacheManager.addTemplateDependency(name, partial);
+                }
+            });
+            templates.add(template);
+            logger.debug("テンプレートを読み込みました: {}", name);
         }
         
-        Files.walkFileTree(templatesDir, new SimpleFileVisitor<Path>() {
+        return templates;
+    }
+    
+    private String templateName(Path templatesDir, Path file) {
+        String name = templatesDir.relativize(file).toString();
+        return name.substring(0, name.lastIndexOf('.'));
+    }
+    
+    private List<SourceFile> scanSources(Path dir, Predicate<Path> filter) throws IOException {
+        List<SourceFile> files = new ArrayList<>();
+        
+        if (!Files.exists(dir)) {
+            return files;
+        }
+        
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                if (file.toString().endsWith(".html")) {
-                    String name = templatesDir.relativize(file).toString();
-                    name = name.substring(0, name.lastIndexOf('.'));
-                    
-                    String content = Files.readString(file);
-                    Template template = new Template(name, content);
-                    
-                    cacheManager.cacheTemplate(name, template);
-                    logger.debug("テンプレートを読み込みました: {}", name);
+                if (attrs.isRegularFile() && filter.test(file)) {
+                    files.add(SourceFile.of(file, attrs));
                 }
                 return FileVisitResult.CONTINUE;
             }
         });
+        
+        return files;
     }
     
-    private List<Page> loadPages(Path contentDir, LocalDateTime lastBuild) throws IOException {
-        List<Page> pages = new ArrayList<>();
+    /**
+     * 前回のマニフェストと比較して内容が変わった入力を検出する。
+     * サイズと更新時刻が一致する入力は読まずに未変更とみなし、それ以外は内容ハッシュで判定する。
+     */
+    private InputChanges detectChanges(BuildManifest previous, List<SourceFile> inputs) {
+        Map<String, String> hashes = new HashMap<>();
+        Set<String> changed = new HashSet<>();
+        List<SourceFile> toHash = new ArrayList<>();
         
-        Files.walkFileTree(contentDir, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                if (file.toString().endsWith(".md") && !file.getParent().endsWith("posts")) {
-                    
-                    // 増分ビルドの場合、最終ビルド以降に変更されたファイルのみ処理
-                    if (lastBuild != null && attrs.lastModifiedTime().toInstant()
-                        .isBefore(lastBuild.atZone(java.time.ZoneId.systemDefault()).toInstant())) {
-                        return FileVisitResult.CONTINUE;
-                    }
-                    
-                    try {
-                        Page page = markdownParser.parsePage(file);
-                        pages.add(page);
-                        cacheManager.cachePage(page.slug(), page);
-                        logger.debug("ページを読み込みました: {}", page.slug());
-                    } catch (Exception e) {
-                        logger.error("ページ解析エラー: " + file, e);
-                    }
+        for (SourceFile file : inputs) {
+            if (previous.isUnchanged(file)) {
+                hashes.put(file.key(), previous.get(file.key()).contentHash());
+            } else {
+                toHash.add(file);
+            }
+        }
+        
+        List<FileOutcome<String>> outcomes = runInParallel(
+            toHash.stream().map(SourceFile::path).toList(), this::hashFile);
+        
+        for (int i = 0; i < toHash.size(); i++) {
+            String key = toHash.get(i).key();
+            FileOutcome<String> outcome = outcomes.get(i);
+            
+            if (outcome.error() != null) {
+                logger.warn("ハッシュ計算エラー: {} ({})", outcome.file(), outcome.error().getMessage());
+                hashes.put(key, "");
+                changed.add(key);
+                continue;
+            }
+            
+            hashes.put(key, outcome.value());
+            BuildManifest.Entry entry = previous.get(key);
+            if (entry == null || !entry.contentHash().equals(outcome.value())) {
+                changed.add(key);
+            }
+        }
+        
+        Set<String> currentKeys = new HashSet<>(hashes.keySet());
+        List<BuildManifest.Entry> removed = previous.entries().stream()
+            .filter(entry -> !currentKeys.contains(entry.source()))
+            .toList();
+        
+        return new InputChanges(hashes, changed, removed);
+    }
+    
+    private String hashFile(Path file) {
+        try {
+            return ContentHash.of(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private List<LoadedContent<Page>> loadPages(List<SourceFile> files, InputChanges changes) {
+        Map<String, Page> reused = new HashMap<>();
+        List<MarkdownFile> toParse = new ArrayList<>();
+        
+        // 内容が変わっていない入力はキャッシュ済みの解析結果を再利用する
+        // メモリ上に無い場合は、同じ内容を解析した結果をディスクキャッシュから探す
+        for (SourceFile file : files) {
+            String filename = file.path().getFileName().toString();
+            if (!changes.isChanged(file)) {
+                cacheManager.getPage(markdownParser.generateSlug(filename))
+                    .filter(page -> isSameModificationTime(page.lastModified(), file))
+                    .ifPresent(page -> reused.put(file.key(), page));
+            }
+            if (!reused.containsKey(file.key())) {
+                cacheManager.getPersistedPage(filename, changes.hashes().get(file.key()), lastModified(file))
+                    .ifPresent(page -> reused.put(file.key(), page));
+            }
+            if (!reused.containsKey(file.key())) {
+                toParse.add(file.toMarkdownFile());
+            }
+        }
+        
+        Map<Path, MarkdownParser.ParseResult<Page>> parsed = new HashMap<>();
+        try (ExecutorService executor = newParseExecutor()) {
+            for (MarkdownParser.ParseResult<Page> outcome : markdownParser.parsePages(toParse, executor)) {
+                parsed.put(outcome.file(), outcome);
+            }
+        }
+        
+        List<LoadedContent<Page>> pages = new ArrayList<>();
+        
+        // 発見順に結果を受け取ることで出力順序を決定的に保つ
+        for (SourceFile file : files) {
+            Page page = reused.get(file.key());
+            
+            if (page == null) {
+                MarkdownParser.ParseResult<Page> outcome = parsed.get(file.path());
+                if (outcome.error() != null) {
+                    logger.error("ページ解析エラー: " + outcome.file(), outcome.error());
+                    continue;
                 }
-                return FileVisitResult.CONTINUE;
+                
+                page = outcome.value();
+                cacheManager.cachePage(page.slug(), page, changes.hashes().get(file.key()));
+                logger.debug("ページを読み込みました: {}", page.slug());
             }
-        });
+            
+            pages.add(new LoadedContent<>(file, page, page.slug() + ".html"));
+        }
         
         return pages;
     }
     
-    private List<Post> loadPosts(Path postsDir, boolean includeDrafts, LocalDateTime lastBuild) throws IOException {
-        List<Post> posts = new ArrayList<>();
+    private List<LoadedContent<Post>> loadPosts(List<SourceFile> files, boolean includeDrafts, InputChanges changes) {
+        Map<String, Post> reused = new HashMap<>();
+        List<MarkdownFile> toParse = new ArrayList<>();
         
-        if (!Files.exists(postsDir)) {
-            logger.info("投稿ディレクトリが存在しません: {}", postsDir);
-            return posts;
+        for (SourceFile file : files) {
+            String filename = file.path().getFileName().toString();
+            if (!changes.isChanged(file)) {
+                cacheManager.getPost(markdownParser.generateSlug(filename))
+                    .filter(post -> isSameModificationTime(post.lastModified(), file))
+                    .ifPresent(post -> reused.put(file.key(), post));
+            }
+            if (!reused.containsKey(file.key())) {
+                cacheManager.getPersistedPost(filename, changes.hashes().get(file.key()), lastModified(file))
+                    .ifPresent(post -> reused.put(file.key(), post));
+            }
+            if (!reused.containsKey(file.key())) {
+                toParse.add(file.toMarkdownFile());
+            }
         }
         
-        Files.walkFileTree(postsDir, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                if (file.toString().endsWith(".md")) {
-                    
-                    // 増分ビルドの場合、最終ビルド以降に変更されたファイルのみ処理
-                    if (lastBuild != null && attrs.lastModifiedTime().toInstant()
-                        .isBefore(lastBuild.atZone(java.time.ZoneId.systemDefault()).toInstant())) {
-                        return FileVisitResult.CONTINUE;
-                    }
-                    
-                    try {
-                        Post post = markdownParser.parsePost(file);
-                        
-                        // 下書きの処理
-                        if (!includeDrafts && !post.isPublished()) {
-                            return FileVisitResult.CONTINUE;
-                        }
-                        
-                        posts.add(post);
-                        cacheManager.cachePost(post.slug(), post);
-                        logger.debug("投稿を読み込みました: {}", post.slug());
-                    } catch (Exception e) {
-                        logger.error("投稿解析エラー: " + file, e);
-                    }
+        Map<Path, MarkdownParser.ParseResult<Post>> parsed = new HashMap<>();
+        try (ExecutorService executor = newParseExecutor()) {
+            for (MarkdownParser.ParseResult<Post> outcome : markdownParser.parsePosts(toParse, executor)) {
+                parsed.put(outcome.file(), outcome);
+            }
+        }
+        
+        List<LoadedContent<Post>> posts = new ArrayList<>();
+        
+        for (SourceFile file : files) {
+            Post post = reused.get(file.key());
+            
+            if (post == null) {
+                MarkdownParser.ParseResult<Post> outcome = parsed.get(file.path());
+                if (outcome.error() != null) {
+                    logger.error("投稿解析エラー: " + outcome.file(), outcome.error());
+                    continue;
                 }
-                return FileVisitResult.CONTINUE;
+                
+                post = outcome.value();
+                // ディスクへの保存には本文の描画が必要なため、出力しない下書きは保存しない
+                boolean persist = includeDrafts || post.isPublished();
+                cacheManager.cachePost(post.slug(), post, persist ? changes.hashes().get(file.key()) : null);
+                logger.debug("投稿を読み込みました: {}", post.slug());
             }
-        });
+            
+            // 下書きの処理
+            if (!includeDrafts && !post.isPublished()) {
+                continue;
+            }
+            
+            posts.add(new LoadedContent<>(file, post, post.slug() + ".html"));
+        }
         
         // 投稿を公開日時でソート
-        posts.sort((a, b) -> b.publishedAt().compareTo(a.publishedAt()));
+        posts.sort((a, b) -> b.content().publishedAt().compareTo(a.content().publishedAt()));
         
         return posts;
     }
     
-    private int generateAllHtml(List<Page> pages, List<Post> posts, Path outputDir, boolean production) throws IOException {
-        int generatedFiles = 0;
+    /**
+     * Markdownの解析に使う実行環境（仮想スレッド上で、同時実行数を設定された並列度に制限する）
+     */
+    private ExecutorService newParseExecutor() {
+        return Executors.newFixedThreadPool(siteConfig.getParallelism(), Thread.ofVirtual().name("parse-", 0).factory());
+    }
+    
+    private boolean isSameModificationTime(LocalDateTime lastModified, SourceFile file) {
+        return lastModified != null
+            && lastModified.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli() == file.lastModifiedMillis();
+    }
+    
+    private LocalDateTime lastModified(SourceFile file) {
+        return LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(file.lastModifiedMillis()),
+                                       java.time.ZoneId.systemDefault());
+    }
+    
+    /**
+     * 仮想スレッド上でファイルを並列に処理する。
+     * 同時実行数は設定された並列度で制限し、結果は入力と同じ順序で返す。
+     */
+    private <T> List<FileOutcome<T>> runInParallel(List<Path> files, Function<Path, T> task) {
+        if (files.isEmpty()) {
+            return List.of();
+        }
         
-        // ページのHTML生成
-        for (Page page : pages) {
-            String html = htmlGenerator.generatePageHtml(page, "page");
-            if (production) {
-                html = htmlGenerator.minifyHtml(html);
+        Semaphore permits = new Semaphore(siteConfig.getParallelism());
+        List<Future<FileOutcome<T>>> futures = new ArrayList<>(files.size());
+        
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : files) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return new FileOutcome<>(file, task.apply(file), null);
+                    } catch (Exception e) {
+                        return new FileOutcome<>(file, null, e);
+                    } finally {
+                        permits.release();
+                    }
+                }));
             }
             
-            Path outputPath = outputDir.resolve(page.slug() + ".html");
-            htmlGenerator.writeHtmlToFile(html, outputPath);
-            generatedFiles++;
+            List<FileOutcome<T>> outcomes = new ArrayList<>(futures.size());
+            for (Future<FileOutcome<T>> future : futures) {
+                outcomes.add(future.get());
+            }
+            return outcomes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuildException("ファイルの処理が中断されました", e);
+        } catch (ExecutionException e) {
+            throw new BuildException("ファイルの処理に失敗しました", e.getCause());
+        }
+    }
+    
+    /**
+     * 生成するHTMLと、それぞれが依存するノードを列挙する。
+     * 各出力には元になった入力の内容ハッシュから求めたフィンガープリントを付け、レンダリングキャッシュのキーに使う。
+     * キャッシュのタグには、出力が参照するコンテンツとコレクションを記録する。
+     */
+    private List<PlannedOutput> planHtmlOutputs(List<LoadedContent<Page>> pages, List<LoadedContent<Post>> posts,
+                                                Map<String, String> hashes) {
+        List<PlannedOutput> outputs = new ArrayList<>();
+        
+        // ページのHTML生成
+        for (LoadedContent<Page> page : pages) {
+            outputs.add(new PlannedOutput(
+                page.output(),
+                List.of(DependencyGraph.contentNode(page.source().key()), DependencyGraph.templateNode("page")),
+                "page",
+                hashes.get(page.source().key()),
+                Set.of(CacheManager.contentTag(page.content().slug())),
+                out -> htmlGenerator.renderPageHtml(page.content(), "page", out)));
         }
         
         // 投稿のHTML生成
+        Map<String, String> postHashes = new HashMap<>();
+        for (LoadedContent<Post> post : posts) {
+            String hash = hashes.get(post.source().key());
+            postHashes.put(post.content().slug(), hash);
+            outputs.add(new PlannedOutput(
+                post.output(),
+                List.of(DependencyGraph.contentNode(post.source().key()), DependencyGraph.templateNode("post")),
+                "post",
+                hash,
+                Set.of(CacheManager.contentTag(post.content().slug())),
+                out -> htmlGenerator.renderPostHtml(post.content(), "post", out)));
+        }
+        
+        if (!posts.isEmpty()) {
+            List<Post> allPosts = posts.stream().map(LoadedContent::content).toList();
+            String allPostsFingerprint = postsFingerprint("", allPosts, postHashes);
+            
+            // インデックスページの生成
+            outputs.add(new PlannedOutput(
+                "index.html",
+                List.of(DependencyGraph.ALL_POSTS, DependencyGraph.templateNode("index")),
+                "index",
+                allPostsFingerprint,
+                postsTags(DependencyGraph.ALL_POSTS, allPosts),
+                out -> htmlGenerator.renderIndexPage(allPosts, "index", out)));
+            
+            // アーカイブページの生成
+            outputs.add(new PlannedOutput(
+                "archive.html",
+                List.of(DependencyGraph.ALL_POSTS, DependencyGraph.templateNode("archive")),
+                "archive",
+                allPostsFingerprint,
+                postsTags(DependencyGraph.ALL_POSTS, allPosts),
+                out -> htmlGenerator.renderArchivePage(allPosts, "archive", out)));
+            
+            // カテゴリページの生成
+            for (Map.Entry<String, List<Post>> entry : htmlGenerator.groupPostsByCategory(allPosts).entrySet()) {
+                outputs.add(new PlannedOutput(
+                    categoryOutput(entry.getKey()),
+                    List.of(DependencyGraph.categoryNode(entry.getKey()), DependencyGraph.templateNode("category")),
+                    "category",
+                    postsFingerprint(entry.getKey(), entry.getValue(), postHashes),
+                    postsTags(DependencyGraph.categoryNode(entry.getKey()), entry.getValue()),
+                    out -> htmlGenerator.renderCategoryPage(entry.getKey(), entry.getValue(), "category", out)));
+            }
+        }
+        
+        return outputs;
+    }
+    
+    /**
+     * 一覧ページのフィンガープリント（並び順を含む投稿の内容ハッシュの組み合わせ）
+     */
+    private String postsFingerprint(String listing, List<Post> posts, Map<String, String> postHashes) {
+        List<String> parts = new ArrayList<>(posts.size() + 1);
+        parts.add(listing);
         for (Post post : posts) {
-            String html = htmlGenerator.generatePostHtml(post, "post");
-            if (production) {
-                html = htmlGenerator.minifyHtml(html);
+            String hash = postHashes.get(post.slug());
+            if (hash == null) {
+                return null;
             }
-            
-            Path outputPath = outputDir.resolve(post.slug() + ".html");
-            htmlGenerator.writeHtmlToFile(html, outputPath);
-            generatedFiles++;
+            parts.add(hash);
+        }
+        return ContentHash.combine(parts);
+    }
+    
+    /**
+     * 一覧ページのキャッシュのタグ（コレクション自体と、掲載する各投稿）
+     */
+    private Set<String> postsTags(String collection, List<Post> posts) {
+        Set<String> tags = new HashSet<>(posts.size() + 1);
+        tags.add(collection);
+        for (Post post : posts) {
+            tags.add(CacheManager.contentTag(post.slug()));
+        }
+        return tags;
+    }
+    
+    private DependencyGraph buildDependencyGraph(List<PlannedOutput> outputs, List<Template> templates,
+                                                 List<LoadedContent<Post>> posts) {
+        DependencyGraph graph = new DependencyGraph();
+        
+        for (PlannedOutput output : outputs) {
+            graph.addOutput(output.output(), output.dependencies());
         }
         
-        // インデックスページの生成
-        if (!posts.isEmpty()) {
-            String indexHtml = htmlGenerator.generateIndexPage(posts, "index");
-            if (production) {
-                indexHtml = htmlGenerator.minifyHtml(indexHtml);
+        // テンプレートからパーシャルへの依存
+        for (Template template : templates) {
+            for (String dependency : template.getDependencies()) {
+                graph.addDependency(DependencyGraph.templateNode(template.name()), DependencyGraph.templateNode(dependency));
             }
-            
-            Path indexPath = outputDir.resolve("index.html");
-            htmlGenerator.writeHtmlToFile(indexHtml, indexPath);
-            generatedFiles++;
         }
         
-        // アーカイブページの生成
-        if (!posts.isEmpty()) {
-            String archiveHtml = htmlGenerator.generateArchivePage(posts, "archive");
-            if (production) {
-                archiveHtml = htmlGenerator.minifyHtml(archiveHtml);
+        // 投稿コレクションとカテゴリコレクションの構成
+        Map<Post, String> nodeByPost = new IdentityHashMap<>();
+        for (LoadedContent<Post> post : posts) {
+            String node = DependencyGraph.contentNode(post.source().key());
+            nodeByPost.put(post.content(), node);
+            graph.addDependency(DependencyGraph.ALL_POSTS, node);
+        }
+        List<Post> allPosts = posts.stream().map(LoadedContent::content).toList();
+        for (Map.Entry<String, List<Post>> entry : htmlGenerator.groupPostsByCategory(allPosts).entrySet()) {
+            for (Post post : entry.getValue()) {
+                graph.addDependency(DependencyGraph.categoryNode(entry.getKey()), nodeByPost.get(post));
             }
-            
-            Path archivePath = outputDir.resolve("archive.html");
-            htmlGenerator.writeHtmlToFile(archiveHtml, archivePath);
-            generatedFiles++;
         }
         
-        // カテゴリページの生成
-        Map<String, String> categoryPages = htmlGenerator.generateCategoryPages(posts, "category");
-        for (Map.Entry<String, String> entry : categoryPages.entrySet()) {
-            String html = entry.getValue();
-            if (production) {
-                html = htmlGenerator.minifyHtml(html);
+        return graph;
+    }
+    
+    /**
+     * 変更・削除された入力に対応するグラフ上のノード
+     */
+    private Set<String> changedNodes(InputChanges changes, Path templatesDir) {
+        Set<String> nodes = new HashSet<>();
+        for (String name : changedTemplateNames(changes, templatesDir)) {
+            nodes.add(DependencyGraph.templateNode(name));
+        }
+        for (String source : changes.changedOrRemovedSources()) {
+            if (source.endsWith(".md")) {
+                nodes.add(DependencyGraph.contentNode(source));
+            }
+        }
+        return nodes;
+    }
+    
+    private Set<String> changedTemplateNames(InputChanges changes, Path templatesDir) {
+        Path templatesRoot = templatesDir.toAbsolutePath().normalize();
+        Set<String> names = new HashSet<>();
+        for (String source : changes.changedOrRemovedSources()) {
+            Path path = Paths.get(source);
+            if (path.startsWith(templatesRoot)) {
+                names.add(templateName(templatesRoot, path));
+            }
+        }
+        return names;
+    }
+    
+    /**
+     * 変更の影響を受ける出力を求める。
+     * 削除された投稿や所属カテゴリの変更を捉えるため、前回と今回の両方のグラフを辿る。
+     */
+    private Set<String> findAffectedOutputs(DependencyGraph previous, DependencyGraph current, Set<String> changedNodes) {
+        Set<String> affected = new HashSet<>(current.affectedOutputs(changedNodes));
+        affected.addAll(previous.affectedOutputs(changedNodes));
+        return affected;
+    }
+    
+    private HtmlRenderPipeline.PipelineResult renderHtml(List<PlannedOutput> outputs, Path outputDir,
+                                                        boolean production, AssetFingerprints fingerprints) throws IOException {
+        List<HtmlRenderPipeline.RenderJob> jobs = outputs.stream()
+            .map(output -> new HtmlRenderPipeline.RenderJob(
+                outputDir.resolve(output.output()),
+                out -> renderOutput(output, fingerprints, out)))
+            .toList();
+        
+        HtmlRenderPipeline pipeline = new HtmlRenderPipeline(siteConfig.getRenderWorkers(), production);
+        
+        return pipeline.run(jobs);
+    }
+    
+    /**
+     * 出力を書き出す。アセットへの参照は書き出す途中で書き換え、レンダリングキャッシュには書き換える前の内容を残す。
+     */
+    private void renderOutput(PlannedOutput output, AssetFingerprints fingerprints, Appendable out) throws IOException {
+        if (fingerprints.isEmpty()) {
+            htmlGenerator.renderCached(output.output(), output.templateName(), output.fingerprint(), output.cacheTags(),
+                                       output.renderer(), out);
+            return;
+        }
+        HtmlAssetRewriter rewriter = fingerprints.htmlRewriter(output.output(), out);
+        htmlGenerator.renderCached(output.output(), output.templateName(), output.fingerprint(), output.cacheTags(),
+                                   output.renderer(), rewriter);
+        rewriter.finish();
+    }
+    
+    private String categoryOutput(String category) {
+        return Paths.get("category", category + ".html").toString();
+    }
+    
+    private BuildManifest createManifest(String buildMode, List<SourceFile> inputs, InputChanges changes,
+                                         List<LoadedContent<Page>> pages, List<LoadedContent<Post>> posts,
+                                         List<SourceFile> staticFiles, Path staticDir, AssetFingerprints fingerprints,
+                                         DependencyGraph dependencyGraph) {
+        Map<String, List<String>> outputsBySource = new HashMap<>();
+        for (LoadedContent<Page> page : pages) {
+            outputsBySource.put(page.source().key(), List.of(page.output()));
+        }
+        for (LoadedContent<Post> post : posts) {
+            outputsBySource.put(post.source().key(), List.of(post.output()));
+        }
+        for (SourceFile file : staticFiles) {
+            String output = staticDir.relativize(file.path()).toString();
+            String fingerprinted = fingerprints.fingerprintedOutput(file);
+            outputsBySource.put(file.key(), fingerprinted != null ? List.of(output, fingerprinted) : List.of(output));
+        }
+        
+        BuildManifest manifest = new BuildManifest(buildMode);
+        for (SourceFile file : inputs) {
+            manifest.put(new BuildManifest.Entry(
+                file.key(),
+                file.size(),
+                file.lastModifiedMillis(),
+                changes.hashes().get(file.key()),
+                outputsBySource.getOrDefault(file.key(), List.of())
+            ));
+        }
+        
+        manifest.setDependencyGraph(dependencyGraph);
+        
+        return manifest;
+    }
+    
+    /**
+     * 前回のビルドで生成されたが、今回どの入力からも生成されなくなった出力を削除する
+     */
+    private void removeOrphanedOutputs(BuildManifest previous, BuildManifest current, Path outputDir) throws IOException {
+        Set<String> orphans = previous.allOutputs();
+        orphans.removeAll(current.allOutputs());
+        
+        Path root = outputDir.toAbsolutePath().normalize();
+        int removed = 0;
+        for (String output : orphans) {
+            Path file = root.resolve(output).normalize();
+            if (file.startsWith(root) && Files.deleteIfExists(file)) {
+                removed++;
+                logger.debug("ソースが存在しない出力を削除しました: {}", file);
+                removeEmptyDirectories(file.getParent(), root);
             }
-            
-            Path categoryPath = outputDir.resolve("category").resolve(entry.getKey() + ".html");
-            htmlGenerator.writeHtmlToFile(html, categoryPath);
-            generatedFiles++;
         }
         
-        return generatedFiles;
+        if (removed > 0) {
+            logger.info("不要になった出力を{}件削除しました", removed);
+        }
+    }
+    
+    /**
+     * 出力を削除して空になったディレクトリを、出力ディレクトリの直下まで順にさかのぼって削除する
+     */
+    private void removeEmptyDirectories(Path dir, Path root) throws IOException {
+        while (dir != null && dir.startsWith(root) && !dir.equals(root)) {
+            try (var children = Files.list(dir)) {
+                if (children.findAny().isPresent()) {
+                    return;
+                }
+            }
+            Files.delete(dir);
+            dir = dir.getParent();
+        }
+    }
+    
+    /**
+     * 出力ディレクトリ内のファイルのうち、今回のビルドの出力でないものを削除する。
+     * 出力ディレクトリ全体を消してから書き直す代わりに使い、残したファイルの更新時刻を保つ。
+     */
+    private void removeStaleOutputs(BuildManifest manifest, Path outputDir) throws IOException {
+        Path root = outputDir.toRealPath();
+        // 出力ディレクトリと同じく実際のパスで比べる（どちらかがシンボリックリンクを経由していても一致させる）
+        Path cacheDir = Files.exists(getCacheDirectory())
+            ? getCacheDirectory().toRealPath()
+            : getCacheDirectory().toAbsolutePath().normalize();
+        Set<String> outputs = manifest.allOutputs();
+        outputs.addAll(List.of(ASSET_MANIFEST_FILE, SEARCH_INDEX_FILE, SITEMAP_FILE, RSS_FILE));
+        int[] removed = {0};
+        
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                // 出力ディレクトリ内にキャッシュを置いている場合は残す
+                return dir.startsWith(cacheDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isSymbolicLink() && Files.exists(file) && file.toRealPath().startsWith(cacheDir)) {
+                    // キャッシュディレクトリへのリンクも残す
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!outputs.contains(root.relativize(file).toString())) {
+                    Files.delete(file);
+                    removed[0]++;
+                    logger.debug("今回のビルドで生成されなかった出力を削除しました: {}", file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                if (!dir.equals(root)) {
+                    try (var children = Files.list(dir)) {
+                        if (children.findAny().isEmpty()) {
+                            Files.delete(dir);
+                        }
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        
+        if (removed[0] > 0) {
+            logger.info("今回のビルドで生成されなかった出力を{}件削除しました", removed[0]);
+        }
     }
     
-    private void generateAssetManifest(Path outputDir, StaticFileProcessor.ProcessingStatistics staticStats) throws IOException {
+    private void generateAssetManifest(Path outputDir, StaticFileProcessor.ProcessingStatistics staticStats,
+                                       AssetFingerprints fingerprints) throws IOException {
         Map<String, Object> manifest = new HashMap<>();
         manifest.put("version", "1.0.0");
         manifest.put("buildTime", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         manifest.put("staticFiles", staticStats.processedFiles());
         manifest.put("totalSize", staticStats.totalSizeBytes());
+        if (!fingerprints.isEmpty()) {
+            // 論理名からハッシュ付きの名前への対応（テンプレート以外で参照を解決する場合に使う）
+            manifest.put("assets", fingerprints.assets());
+        }
         
-        Path manifestPath = outputDir.resolve("manifest.json");
-        objectMapper.writeValue(manifestPath.toFile(), manifest);
+        Path manifestPath = outputDir.resolve(ASSET_MANIFEST_FILE);
+        SkipUnchangedChannel.write(manifestPath, objectMapper.writeValueAsBytes(manifest));
         logger.debug("アセットマニフェストを生成しました: {}", manifestPath);
     }
     
@@ -459,19 +1037,19 @@ public class BuildEngine implements BuildEngineInterface {
             searchIndex.add(item);
         }
         
-        Path searchIndexPath = outputDir.resolve("search-index.json");
-        objectMapper.writeValue(searchIndexPath.toFile(), searchIndex);
+        Path searchIndexPath = outputDir.resolve(SEARCH_INDEX_FILE);
+        SkipUnchangedChannel.write(searchIndexPath, objectMapper.writeValueAsBytes(searchIndex));
         logger.debug("検索インデックスを生成しました: {}", searchIndexPath);
     }
     
     private void generateSitemapAndRss(List<Page> pages, List<Post> posts, Path outputDir) throws IOException {
         // サイトマップ
         String sitemap = htmlGenerator.generateSitemap(pages, posts);
-        Files.writeString(outputDir.resolve("sitemap.xml"), sitemap);
+        SkipUnchangedChannel.write(outputDir.resolve(SITEMAP_FILE), sitemap.getBytes(StandardCharsets.UTF_8));
         
         // RSS
         String rss = htmlGenerator.generateRssFeed(posts);
-        Files.writeString(outputDir.resolve("rss.xml"), rss);
+        SkipUnchangedChannel.write(outputDir.resolve(RSS_FILE), rss.getBytes(StandardCharsets.UTF_8));
         
         logger.debug("サイトマップとRSSフィードを生成しました");
     }
@@ -534,49 +1112,18 @@ public class BuildEngine implements BuildEngineInterface {
             .sum();
     }
     
-    private int getModifiedFileCount(LocalDateTime lastBuild) {
-        try {
-            Path contentDir = getContentDirectory();
-            Path templatesDir = getTemplatesDirectory();
-            Path staticDir = getStaticDirectory();
-            
-            return (int) Files.walk(contentDir)
-                .filter(Files::isRegularFile)
-                .filter(path -> {
-                    try {
-                        return Files.getLastModifiedTime(path).toInstant()
-                            .isAfter(lastBuild.atZone(java.time.ZoneId.systemDefault()).toInstant());
-                    } catch (IOException e) {
-                        return false;
-                    }
-                })
-                .count() +
-                (int) Files.walk(templatesDir)
-                .filter(Files::isRegularFile)
-                .filter(path -> {
-                    try {
-                        return Files.getLastModifiedTime(path).toInstant()
-                            .isAfter(lastBuild.atZone(java.time.ZoneId.systemDefault()).toInstant());
-                    } catch (IOException e) {
-                        return false;
-                    }
-                })
-                .count() +
-                (int) Files.walk(staticDir)
-                .filter(Files::isRegularFile)
-                .filter(path -> {
-                    try {
-                        return Files.getLastModifiedTime(path).toInstant()
-                            .isAfter(lastBuild.atZone(java.time.ZoneId.systemDefault()).toInstant());
-                    } catch (IOException e) {
-                        return false;
-                    }
-                })
-                .count();
-        } catch (IOException e) {
-            logger.error("変更ファイル数の計算エラー", e);
-            return 0;
-        }
+    private Path getCacheDirectory() {
+        String cacheDir = siteConfig.getCacheDirectory();
+        return Paths.get(cacheDir != null ? cacheDir : BuildConfig.defaultCacheDirectory());
+    }
+    
+    private Path getManifestPath() {
+        return getCacheDirectory().resolve(BuildManifest.FILE_NAME);
+    }
+    
+    private String buildMode(boolean includeDrafts, boolean production, AssetFingerprints fingerprints) {
+        String mode = "drafts=" + includeDrafts + ";production=" + production;
+        return fingerprints.isEmpty() ? mode : mode + ";assets=" + fingerprints.version();
     }
     
     // Record classes for return types
@@ -599,6 +1146,42 @@ public class BuildEngine implements BuildEngineInterface {
         int contentFiles,
         int staticFiles,
         int templateFiles,
-        long outputSize
+        long outputSize,
+        HtmlRenderPipeline.StageTimings htmlStageTimings
+    ) {}
+    
+    private record FileOutcome<T>(Path file, T value, Exception error) {}
+    
+    private record LoadedContent<T>(SourceFile source, T content, String output) {}
+    
+    private record PlannedOutput(
+        String output,
+        List<String> dependencies,
+        String templateName,
+        String fingerprint,
+        Set<String> cacheTags,
+        HtmlRenderPipeline.HtmlRenderer renderer
     ) {}
+    
+    /**
+     * 前回ビルドからの入力の変化
+     */
+    private record InputChanges(Map<String, String> hashes, Set<String> changed, List<BuildManifest.Entry> removed) {
+        
+        boolean isChanged(SourceFile file) {
+            return changed.contains(file.key());
+        }
+        
+        Set<String> changedOrRemovedSources() {
+            Set<String> sources = new HashSet<>(changed);
+            for (BuildManifest.Entry entry : removed) {
+                sources.add(entry.source());
+            }
+            return sources;
+        }
+        
+        int modifiedCount() {
+            return changed.size() + removed.size();
+        }
+    }
 }
\ No newline at end of file
@@ -1,7 +1,8 @@
 package com.javassg.build;
 
+import com.javassg.cache.CacheManager;
+
 import java.io.IOException;
-import java.time.LocalDateTime;
 
 /**
  * ビルドエンジンのインターフェース
@@ -10,7 +11,7 @@ public interface BuildEngineInterface {
     
     BuildEngine.BuildResult build();
     
-    BuildEngine.BuildResult buildIncremental(LocalDateTime lastBuild);
+    BuildEngine.BuildResult buildIncremental();
     
     BuildEngine.BuildResult buildWithDrafts();
     
@@ -23,4 +24,11 @@ public interface BuildEngineInterface {
     void startWatching() throws IOException;
     
     void stopWatching();
+    
+    /**
+     * 最初のビルドが冷えたキャッシュから始まらないよう、テンプレートとコンテンツを事前に読み込む
+     */
+    default CacheManager.WarmUpResult warmUp() {
+        return new CacheManager.WarmUpResult(0, 0, 0, 0, 0, 0);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package com.javassg.build;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * ビルド間で永続化されるビルドマニフェスト
+ *
+ * 入力ファイルごとにサイズ・更新時刻・内容ハッシュと、そこから生成された出力ファイルを記録する。
+ * 増分ビルドはこの記録と現在のファイルを比較し、内容が変わった入力だけを再処理する。
+ * 出力間の依存関係は{@link DependencyGraph}として併せて保存する。
+ */
+public class BuildManifest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BuildManifest.class);
+
+    public static final String FILE_NAME = "manifest.bin";
+
+    private static final int MAGIC = 0x4A53474D; // "JSGM"
+    private static final int FORMAT_VERSION = 2;
+
+    private final String buildMode;
+    private final Map<String, Entry> entries;
+    private DependencyGraph dependencyGraph;
+
+    public BuildManifest(String buildMode) {
+        this.buildMode = buildMode;
+        this.entries = new TreeMap<>();
+        this.dependencyGraph = new DependencyGraph();
+    }
+
+    /**
+     * マニフェストを読み込む。存在しない・壊れている場合は空のマニフェストを返す。
+     */
+    public static BuildManifest load(Path file) {
+        if (!Files.exists(file)) {
+            return new BuildManifest("");
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("マニフェストの形式が不正です");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("未対応のマニフェストバージョンです: " + version);
+            }
+
+            BuildManifest manifest = new BuildManifest(in.readUTF());
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String source = in.readUTF();
+                long size = in.readLong();
+                long lastModifiedMillis = in.readLong();
+                String contentHash = in.readUTF();
+                int outputCount = in.readInt();
+                List<String> outputs = new ArrayList<>(outputCount);
+                for (int j = 0; j < outputCount; j++) {
+                    outputs.add(in.readUTF());
+                }
+                manifest.put(new Entry(source, size, lastModifiedMillis, contentHash, outputs));
+            }
+            manifest.setDependencyGraph(DependencyGraph.readFrom(in));
+            return manifest;
+        } catch (IOException e) {
+            logger.warn("ビルドマニフェストを読み込めないため全体を再ビルドします: {} ({})", file, e.getMessage());
+            return new BuildManifest("");
+        }
+    }
+
+    /**
+     * 一時ファイルに書き出してから置き換えることで、中断時にも壊れたマニフェストを残さない
+     */
+    public void save(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(buildMode);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                out.writeUTF(entry.source());
+                out.writeLong(entry.size());
+                out.writeLong(entry.lastModifiedMillis());
+                out.writeUTF(entry.contentHash());
+                out.writeInt(entry.outputs().size());
+                for (String output : entry.outputs()) {
+                    out.writeUTF(output);
+                }
+            }
+            dependencyGraph.writeTo(out);
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("ビルドマニフェストを保存しました: {} ({}件)", file, entries.size());
+    }
+
+    public String getBuildMode() {
+        return buildMode;
+    }
+
+    public DependencyGraph getDependencyGraph() {
+        return dependencyGraph;
+    }
+
+    public void setDependencyGraph(DependencyGraph dependencyGraph) {
+        this.dependencyGraph = dependencyGraph;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public Entry get(String source) {
+        return entries.get(source);
+    }
+
+    public void put(Entry entry) {
+        entries.put(entry.source(), entry);
+    }
+
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * サイズと更新時刻が記録と一致する場合は内容を読まずに未変更とみなす
+     */
+    public boolean isUnchanged(SourceFile file) {
+        Entry entry = entries.get(file.key());
+        return entry != null
+            && entry.size() == file.size()
+            && entry.lastModifiedMillis() == file.lastModifiedMillis();
+    }
+
+    /**
+     * 記録されている全ての出力ファイル（出力ディレクトリからの相対パス）
+     */
+    public Set<String> allOutputs() {
+        Set<String> outputs = new HashSet<>(dependencyGraph.outputs());
+        for (Entry entry : entries.values()) {
+            outputs.addAll(entry.outputs());
+        }
+        return outputs;
+    }
+
+    // Record classes for return types
+    public record Entry(
+        String source,
+        long size,
+        long lastModifiedMillis,
+        String contentHash,
+        List<String> outputs
+    ) {
+        public Entry {
+            outputs = List.copyOf(outputs);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.javassg.build;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 出力ファイルと、それが依存する入力・テンプレート・コレクションの依存グラフ
+ *
+ * ノードは種類ごとの接頭辞付き文字列で表す。
+ * <ul>
+ *   <li>{@code output:<出力パス>} 生成されるファイル</li>
+ *   <li>{@code content:<ソースキー>} Markdownファイル</li>
+ *   <li>{@code template:<名前>} テンプレート（パーシャルへの依存を含む）</li>
+ *   <li>{@code collection:posts} / {@code collection:category:<名前>} 投稿の集合</li>
+ * </ul>
+ * 変更されたノードから依存元を逆向きに辿ることで、再生成が必要な出力を求める。
+ */
+public class DependencyGraph {
+
+    private static final String OUTPUT_PREFIX = "output:";
+    private static final String CONTENT_PREFIX = "content:";
+    private static final String TEMPLATE_PREFIX = "template:";
+    private static final String CATEGORY_PREFIX = "collection:category:";
+
+    public static final String ALL_POSTS = "collection:posts";
+
+    private final Map<String, Set<String>> dependencies = new TreeMap<>();
+    private Map<String, Set<String>> dependents;
+
+    public static String contentNode(String sourceKey) {
+        return CONTENT_PREFIX + sourceKey;
+    }
+
+    public static String templateNode(String templateName) {
+        return TEMPLATE_PREFIX + templateName;
+    }
+
+    public static String categoryNode(String category) {
+        return CATEGORY_PREFIX + category;
+    }
+
+    public void addDependency(String node, String dependency) {
+        dependencies.computeIfAbsent(node, key -> new TreeSet<>()).add(dependency);
+        dependents = null;
+    }
+
+    public void addOutput(String output, Collection<String> outputDependencies) {
+        String node = OUTPUT_PREFIX + output;
+        dependencies.computeIfAbsent(node, key -> new TreeSet<>());
+        for (String dependency : outputDependencies) {
+            addDependency(node, dependency);
+        }
+    }
+
+    public Set<String> dependenciesOf(String node) {
+        return Collections.unmodifiableSet(dependencies.getOrDefault(node, Set.of()));
+    }
+
+    /**
+     * グラフに登録されている全ての出力パス
+     */
+    public Set<String> outputs() {
+        Set<String> outputs = new HashSet<>();
+        for (String node : dependencies.keySet()) {
+            if (node.startsWith(OUTPUT_PREFIX)) {
+                outputs.add(node.substring(OUTPUT_PREFIX.length()));
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * 変更されたノードに直接・間接に依存する出力パスを返す
+     */
+    public Set<String> affectedOutputs(Collection<String> changedNodes) {
+        Map<String, Set<String>> reverse = reverseEdges();
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(changedNodes);
+        Set<String> affected = new HashSet<>();
+
+        while (!queue.isEmpty()) {
+            String node = queue.poll();
+            if (!visited.add(node)) {
+                continue;
+            }
+            if (node.startsWith(OUTPUT_PREFIX)) {
+                affected.add(node.substring(OUTPUT_PREFIX.length()));
+            }
+            queue.addAll(reverse.getOrDefault(node, Set.of()));
+        }
+
+        return affected;
+    }
+
+    public boolean isEmpty() {
+        return dependencies.isEmpty();
+    }
+
+    private Map<String, Set<String>> reverseEdges() {
+        if (dependents == null) {
+            Map<String, Set<String>> reverse = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                for (String dependency : entry.getValue()) {
+                    reverse.computeIfAbsent(dependency, key -> new HashSet<>()).add(entry.getKey());
+                }
+            }
+            dependents = reverse;
+        }
+        return dependents;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(dependencies.size());
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String dependency : entry.getValue()) {
+                out.writeUTF(dependency);
+            }
+        }
+    }
+
+    static DependencyGraph readFrom(DataInputStream in) throws IOException {
+        DependencyGraph graph = new DependencyGraph();
+        int nodeCount = in.readInt();
+        for (int i = 0; i < nodeCount; i++) {
+            String node = in.readUTF();
+            Set<String> nodeDependencies = graph.dependencies.computeIfAbsent(node, key -> new TreeSet<>());
+            int dependencyCount = in.readInt();
+            for (int j = 0; j < dependencyCount; j++) {
+                nodeDependencies.add(in.readUTF());
+            }
+        }
+        return graph;
+    }
+}
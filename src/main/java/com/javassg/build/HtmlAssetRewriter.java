@@ -0,0 +1,121 @@
+package com.javassg.build;
+
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+
+/**
+ * 出力先へ書き込みながら、HTMLタグの引用符で囲まれた属性値を書き換える{@link Appendable}
+ *
+ * {@link AssetFingerprints}と組み合わせ、{@code src}・{@code href}・{@code srcset}などのアセットへの参照を
+ * ハッシュ付きの名前に置き換える。保持するのは読み込み中の属性値1つだけで、ページ全体は保持しない。
+ * 長すぎる属性値（{@code data:} URLなど）は書き換えずにそのまま出力する。
+ * 書き込みの最後には必ず{@link #finish()}を呼ぶこと。
+ */
+final class HtmlAssetRewriter implements Appendable {
+
+    private static final int MAX_VALUE_LENGTH = 2048;
+
+    private static final int TEXT = 0;
+    private static final int TAG_START = 1;
+    private static final int TAG = 2;
+    private static final int VALUE = 3;
+    private static final int DECLARATION = 4;
+
+    private final Appendable out;
+    private final UnaryOperator<String> rewriter;
+    private final StringBuilder value = new StringBuilder();
+
+    private int state = TEXT;
+    private char quote;
+    private boolean valueTooLong;
+
+    HtmlAssetRewriter(Appendable out, UnaryOperator<String> rewriter) {
+        this.out = out;
+        this.rewriter = rewriter;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            append(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        switch (state) {
+            case TEXT -> {
+                out.append(c);
+                if (c == '<') {
+                    state = TAG_START;
+                }
+            }
+            case TAG_START -> {
+                out.append(c);
+                if (c == '!' || c == '?') {
+                    // コメントや文書型宣言の中は書き換えない
+                    state = DECLARATION;
+                } else {
+                    // 本文中の「<」のようにタグでないものは本文のまま扱う
+                    state = Character.isLetter(c) || c == '/' ? TAG : TEXT;
+                }
+            }
+            case TAG -> {
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                    value.setLength(0);
+                    valueTooLong = false;
+                    state = VALUE;
+                } else if (c == '>') {
+                    state = TEXT;
+                }
+                out.append(c);
+            }
+            case VALUE -> appendValue(c);
+            case DECLARATION -> {
+                out.append(c);
+                if (c == '>') {
+                    state = TEXT;
+                }
+            }
+            default -> throw new IllegalStateException("不明な状態です: " + state);
+        }
+        return this;
+    }
+
+    private void appendValue(char c) throws IOException {
+        if (c == quote) {
+            if (!valueTooLong) {
+                out.append(rewriter.apply(value.toString()));
+            }
+            value.setLength(0);
+            out.append(c);
+            state = TAG;
+        } else if (valueTooLong) {
+            out.append(c);
+        } else {
+            value.append(c);
+            if (value.length() > MAX_VALUE_LENGTH) {
+                out.append(value);
+                value.setLength(0);
+                valueTooLong = true;
+            }
+        }
+    }
+
+    /**
+     * 閉じられていない属性値を書き換えずに出力する
+     */
+    void finish() throws IOException {
+        if (state == VALUE && !valueTooLong) {
+            out.append(value);
+        }
+        value.setLength(0);
+    }
+}
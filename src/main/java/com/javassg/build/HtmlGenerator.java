@@ -1,80 +1,182 @@
 package com.javassg.build;
 
 import com.javassg.cache.CacheManager;
+import com.javassg.cache.RenderCache;
+import com.javassg.model.BlogConfig;
 import com.javassg.model.Page;
+import com.javassg.model.PluginConfig;
 import com.javassg.model.Post;
 import com.javassg.model.SiteConfig;
-import com.javassg.model.Template;
+import com.javassg.model.SiteInfo;
+import com.javassg.template.CompiledTemplate;
+import com.javassg.template.PartialResolver;
+import com.javassg.util.ContentHash;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class HtmlGenerator {
     
     private static final Logger logger = LoggerFactory.getLogger(HtmlGenerator.class);
     
+    /**
+     * これより長い出力はキャッシュせず、出力先へ流すだけにする
+     */
+    private static final int MAX_CACHED_LENGTH = 256 * 1024;
+    
     private final SiteConfig siteConfig;
     private final CacheManager cacheManager;
+    private final String configVersion;
+    private final Map<String, TemplateVersion> templateVersions = new ConcurrentHashMap<>();
     
     public HtmlGenerator(SiteConfig siteConfig, CacheManager cacheManager) {
         this.siteConfig = siteConfig;
         this.cacheManager = cacheManager;
+        this.configVersion = renderingConfigVersion(siteConfig);
     }
     
-    public String generatePageHtml(Page page, String templateName) {
-        Template template = getTemplate(templateName);
-        
-        Map<String, Object> context = new HashMap<>();
-        context.put("site", createSiteContext());
-        context.put("page", createPageContext(page));
+    /**
+     * 出力に影響する設定だけからレンダリングキャッシュのバージョンを作る。
+     * 並列度やキャッシュの保存先のように実行環境ごとに異なる設定は含めないため、
+     * 別のマシンで保存したディスクキャッシュも再利用できる。
+     */
+    static String renderingConfigVersion(SiteConfig siteConfig) {
+        List<String> parts = new ArrayList<>();
+        if (siteConfig == null) {
+            return ContentHash.combine(parts);
+        }
+        SiteInfo site = siteConfig.site();
+        if (site != null) {
+            parts.addAll(Arrays.asList("site", site.title(), site.description(), site.url(), site.language()));
+            if (site.author() != null) {
+                parts.addAll(List.of("author", site.author().name(), site.author().email()));
+            }
+        }
+        BlogConfig blog = siteConfig.blog();
+        if (blog != null) {
+            parts.addAll(List.of("blog", String.valueOf(blog.postsPerPage()), String.valueOf(blog.generateArchive()),
+                                 String.valueOf(blog.generateCategories()), String.valueOf(blog.generateTags())));
+        }
+        if (siteConfig.plugins() != null) {
+            // minifyなどのプラグインの設定は出力に影響する
+            for (PluginConfig plugin : siteConfig.plugins()) {
+                Map<String, Object> settings = plugin.settings() != null ? new TreeMap<>(plugin.settings()) : Map.of();
+                parts.addAll(List.of("plugin", plugin.name(), String.valueOf(plugin.enabled()), String.valueOf(settings)));
+            }
+        }
+        parts.addAll(List.of("fingerprintAssets", String.valueOf(siteConfig.isAssetFingerprintingEnabled())));
+        return ContentHash.combine(parts);
+    }
+    
+    /**
+     * レンダリング結果のキャッシュを参照してから出力する。
+     * キャッシュにあればテンプレートを評価せずにその結果を書き込み、無ければレンダリングして結果を記録する。
+     *
+     * @param outputKey 出力ファイルを表すキー
+     * @param contentFingerprint 出力の元になった内容のフィンガープリント（{@code null} の場合はキャッシュしない）
+     * @param tags 出力が依存するコンテンツ・コレクションのタグ（使用するテンプレートのタグはここで加える）
+     */
+    public void renderCached(String outputKey, String templateName, String contentFingerprint, Set<String> tags,
+                             HtmlRenderPipeline.HtmlRenderer renderer, Appendable out) throws IOException {
+        TemplateVersion templateVersion = contentFingerprint != null ? templateVersion(templateName) : null;
+        if (templateVersion == null) {
+            renderer.renderTo(out);
+            return;
+        }
         
-        String rendered = template.render(context);
+        String key = RenderCache.generateKey(outputKey, contentFingerprint, templateVersion.version(), configVersion);
+        Optional<String> cached = cacheManager.getRendered(key);
+        if (cached.isPresent()) {
+            out.append(cached.get());
+            return;
+        }
         
-        // レンダリング結果をキャッシュ
-        String cacheKey = "page:" + page.slug();
-        cacheManager.cacheRendered(cacheKey, rendered, LocalDateTime.now());
+        CapturingAppendable capture = new CapturingAppendable(out, MAX_CACHED_LENGTH);
+        renderer.renderTo(capture);
+        if (capture.isComplete()) {
+            Set<String> entryTags = new HashSet<>(tags);
+            for (String involved : templateVersion.involved().keySet()) {
+                entryTags.add(CacheManager.templateTag(involved));
+            }
+            cacheManager.cacheRendered(key, capture.captured(), LocalDateTime.now(), entryTags);
+        }
+    }
+    
+    public String generatePageHtml(Page page, String templateName) {
+        CompiledTemplate template = getTemplate(templateName);
         
-        return rendered;
+        return template.render(pageTemplateContext(page), this::resolvePartial);
     }
     
     public String generatePostHtml(Post post, String templateName) {
-        Template template = getTemplate(templateName);
-        
-        Map<String, Object> context = new HashMap<>();
-        context.put("site", createSiteContext());
-        context.put("post", createPostContext(post));
-        
-        String rendered = template.render(context);
+        CompiledTemplate template = getTemplate(templateName);
         
-        // レンダリング結果をキャッシュ
-        String cacheKey = "post:" + post.slug();
-        cacheManager.cacheRendered(cacheKey, rendered, LocalDateTime.now());
-        
-        return rendered;
+        return template.render(postTemplateContext(post), this::resolvePartial);
     }
     
     public String generateIndexPage(List<Post> posts, String templateName) {
-        Template template = getTemplate(templateName);
-        
-        Map<String, Object> context = new HashMap<>();
-        context.put("site", createSiteContext());
-        context.put("posts", posts.stream()
-            .map(this::createPostContext)
-            .collect(Collectors.toList()));
-        
-        return template.render(context);
+        return getTemplate(templateName).render(indexTemplateContext(posts), this::resolvePartial);
     }
     
     public String generateArchivePage(List<Post> posts, String templateName) {
-        Template template = getTemplate(templateName);
-        
+        return getTemplate(templateName).render(archiveTemplateContext(posts), this::resolvePartial);
+    }
+    
+    /**
+     * ページのHTMLを文字列にせず出力先へ直接書き込む
+     */
+    public void renderPageHtml(Page page, String templateName, Appendable out) throws IOException {
+        getTemplate(templateName).render(pageTemplateContext(page), out, this::resolvePartial);
+    }
+    
+    public void renderPostHtml(Post post, String templateName, Appendable out) throws IOException {
+        getTemplate(templateName).render(postTemplateContext(post), out, this::resolvePartial);
+    }
+    
+    public void renderIndexPage(List<Post> posts, String templateName, Appendable out) throws IOException {
+        getTemplate(templateName).render(indexTemplateContext(posts), out, this::resolvePartial);
+    }
+    
+    public void renderArchivePage(List<Post> posts, String templateName, Appendable out) throws IOException {
+        getTemplate(templateName).render(archiveTemplateContext(posts), out, this::resolvePartial);
+    }
+    
+    public void renderCategoryPage(String category, List<Post> categoryPosts, String templateName, Appendable out)
+        throws IOException {
+        getTemplate(templateName).render(categoryTemplateContext(category, categoryPosts), out, this::resolvePartial);
+    }
+    
+    private Map<String, Object> pageTemplateContext(Page page) {
+        Map<String, Object> context = new HashMap<>();
+        context.put("site", siteConfig);
+        context.put("page", page);
+        return context;
+    }
+    
+    private Map<String, Object> postTemplateContext(Post post) {
+        Map<String, Object> context = new HashMap<>();
+        context.put("site", siteConfig);
+        context.put("post", post);
+        return context;
+    }
+    
+    private Map<String, Object> indexTemplateContext(List<Post> posts) {
+        Map<String, Object> context = new HashMap<>();
+        context.put("site", siteConfig);
+        context.put("posts", posts);
+        return context;
+    }
+    
+    private Map<String, Object> archiveTemplateContext(List<Post> posts) {
         // 年別にグループ化
         Map<Integer, List<Post>> postsByYear = posts.stream()
             .collect(Collectors.groupingBy(post -> post.publishedAt().getYear()));
@@ -84,24 +186,40 @@ public class HtmlGenerator {
             .map(entry -> {
                 Map<String, Object> yearData = new HashMap<>();
                 yearData.put("year", entry.getKey());
-                yearData.put("posts", entry.getValue().stream()
-                    .map(this::createPostContext)
-                    .collect(Collectors.toList()));
+                yearData.put("posts", entry.getValue());
                 return yearData;
             })
             .collect(Collectors.toList());
         
         Map<String, Object> context = new HashMap<>();
-        context.put("site", createSiteContext());
+        context.put("site", siteConfig);
         context.put("years", years);
-        
-        return template.render(context);
+        return context;
     }
     
     public Map<String, String> generateCategoryPages(List<Post> posts, String templateName) {
-        Template template = getTemplate(templateName);
         Map<String, String> categoryPages = new HashMap<>();
         
+        for (Map.Entry<String, List<Post>> entry : groupPostsByCategory(posts).entrySet()) {
+            categoryPages.put(entry.getKey(), generateCategoryPage(entry.getKey(), entry.getValue(), templateName));
+        }
+        
+        return categoryPages;
+    }
+    
+    public String generateCategoryPage(String category, List<Post> categoryPosts, String templateName) {
+        return getTemplate(templateName).render(categoryTemplateContext(category, categoryPosts), this::resolvePartial);
+    }
+    
+    private Map<String, Object> categoryTemplateContext(String category, List<Post> categoryPosts) {
+        Map<String, Object> context = new HashMap<>();
+        context.put("site", siteConfig);
+        context.put("category", category);
+        context.put("posts", categoryPosts);
+        return context;
+    }
+    
+    public Map<String, List<Post>> groupPostsByCategory(List<Post> posts) {
         // カテゴリ別にグループ化
         Map<String, List<Post>> postsByCategory = new HashMap<>();
         for (Post post : posts) {
@@ -109,27 +227,11 @@ public class HtmlGenerator {
                 postsByCategory.computeIfAbsent(category, k -> new ArrayList<>()).add(post);
             }
         }
-        
-        for (Map.Entry<String, List<Post>> entry : postsByCategory.entrySet()) {
-            String category = entry.getKey();
-            List<Post> categoryPosts = entry.getValue();
-            
-            Map<String, Object> context = new HashMap<>();
-            context.put("site", createSiteContext());
-            context.put("category", category);
-            context.put("posts", categoryPosts.stream()
-                .map(this::createPostContext)
-                .collect(Collectors.toList()));
-            
-            String html = template.render(context);
-            categoryPages.put(category, html);
-        }
-        
-        return categoryPages;
+        return postsByCategory;
     }
     
     public Map<String, String> generatePaginatedPages(List<Post> posts, String templateName, int postsPerPage) {
-        Template template = getTemplate(templateName);
+        CompiledTemplate template = getTemplate(templateName);
         Map<String, String> pages = new HashMap<>();
         
         int totalPages = (int) Math.ceil((double) posts.size() / postsPerPage);
@@ -141,10 +243,8 @@ public class HtmlGenerator {
             List<Post> pagePosts = posts.subList(startIndex, endIndex);
             
             Map<String, Object> context = new HashMap<>();
-            context.put("site", createSiteContext());
-            context.put("posts", pagePosts.stream()
-                .map(this::createPostContext)
-                .collect(Collectors.toList()));
+            context.put("site", siteConfig);
+            context.put("posts", pagePosts);
             context.put("currentPage", page);
             context.put("totalPages", totalPages);
             context.put("hasPrevious", page > 1);
@@ -152,17 +252,22 @@ public class HtmlGenerator {
             context.put("previousPage", page - 1);
             context.put("nextPage", page + 1);
             
-            String html = template.render(context);
+            String html = template.render(context, this::resolvePartial);
             pages.put("page" + page, html);
         }
         
         return pages;
     }
     
+    /**
+     * HTMLをファイルに書き込む。既存のファイルと内容が同じ場合は書き込まず、更新時刻を保つ。
+     */
     public void writeHtmlToFile(String html, Path outputPath) throws IOException {
-        Files.createDirectories(outputPath.getParent());
-        Files.writeString(outputPath, html);
-        logger.debug("HTMLファイルを書き込みました: {}", outputPath);
+        if (SkipUnchangedChannel.write(outputPath, html.getBytes(StandardCharsets.UTF_8))) {
+            logger.debug("HTMLファイルを書き込みました: {}", outputPath);
+        } else {
+            logger.debug("HTMLファイルの内容が同じため書き込みを省略しました: {}", outputPath);
+        }
     }
     
     public boolean validateHtml(String html) {
@@ -206,13 +311,19 @@ public class HtmlGenerator {
         return tagStack.isEmpty();
     }
     
+    /**
+     * HTMLを最小化する（規則は{@link StreamingHtmlMinifier}を参照）
+     */
     public String minifyHtml(String html) {
-        return html
-            .replaceAll("<!--.*?-->", "") // コメント除去
-            .replaceAll("\\s*\\n\\s*", "") // 改行と前後の空白除去
-            .replaceAll("\\s{2,}", " ") // 複数の空白を1つに
-            .replaceAll(">\\s+<", "><") // タグ間の空白除去
-            .trim();
+        StringBuilder minified = new StringBuilder(html.length());
+        StreamingHtmlMinifier minifier = new StreamingHtmlMinifier(minified);
+        try {
+            minifier.append(html);
+            minifier.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return minified.toString();
     }
     
     public String generateSitemap(List<Page> pages, List<Post> posts) {
@@ -260,7 +371,9 @@ public class HtmlGenerator {
                 rss.append("      <title>").append(escapeXml(post.title())).append("</title>\n");
                 rss.append("      <link>").append(siteConfig.getUrl()).append("/").append(post.slug()).append(".html</link>\n");
                 rss.append("      <description>").append(escapeXml(post.description())).append("</description>\n");
-                rss.append("      <pubDate>").append(post.publishedAt().format(DateTimeFormatter.RFC_1123_DATE_TIME)).append("</pubDate>\n");
+                String pubDate = post.publishedAt().atZone(java.time.ZoneId.systemDefault())
+                    .format(DateTimeFormatter.RFC_1123_DATE_TIME);
+                rss.append("      <pubDate>").append(pubDate).append("</pubDate>\n");
                 rss.append("    </item>\n");
             });
         
@@ -269,45 +382,57 @@ public class HtmlGenerator {
         return rss.toString();
     }
     
-    private Template getTemplate(String templateName) {
-        return cacheManager.getTemplate(templateName)
+    private CompiledTemplate getTemplate(String templateName) {
+        return cacheManager.getCompiledTemplate(templateName)
             .orElseThrow(() -> new HtmlGenerationException("テンプレートが見つかりません: " + templateName));
     }
     
-    private Map<String, Object> createSiteContext() {
-        Map<String, Object> context = new HashMap<>();
-        context.put("title", siteConfig.getTitle());
-        context.put("description", siteConfig.getDescription());
-        context.put("url", siteConfig.getUrl());
-        context.put("language", siteConfig.getLanguage());
-        context.put("author", siteConfig.getAuthor());
-        return context;
+    private CompiledTemplate resolvePartial(String name) {
+        return cacheManager.getCompiledTemplate(name).orElse(null);
     }
     
-    private Map<String, Object> createPageContext(Page page) {
-        Map<String, Object> context = new HashMap<>();
-        context.put("title", page.title());
-        context.put("slug", page.slug());
-        context.put("description", page.description());
-        context.put("content", page.renderedContent());
-        context.put("lastModified", page.lastModified());
-        context.putAll(page.frontMatter());
-        return context;
+    /**
+     * テンプレートと、そこから参照される全てのパーシャルのソースから求めたバージョン。
+     * 関係するテンプレートがキャッシュ上で差し替えられるまでは計算結果を使い回す。
+     */
+    private TemplateVersion templateVersion(String templateName) {
+        CompiledTemplate template = resolvePartial(templateName);
+        if (template == null) {
+            return null;
+        }
+        
+        TemplateVersion known = templateVersions.get(templateName);
+        if (known != null && known.root() == template && known.isCurrent(this::resolvePartial)) {
+            return known;
+        }
+        
+        Map<String, CompiledTemplate> involved = new LinkedHashMap<>();
+        List<String> sources = new ArrayList<>();
+        collectTemplateSources(template, involved, sources);
+        
+        TemplateVersion version = new TemplateVersion(template, involved, ContentHash.combine(sources));
+        templateVersions.put(templateName, version);
+        return version;
     }
     
-    private Map<String, Object> createPostContext(Post post) {
-        Map<String, Object> context = new HashMap<>();
-        context.put("title", post.title());
-        context.put("slug", post.slug());
-        context.put("description", post.description());
-        context.put("content", post.renderedContent());
-        context.put("publishedAt", post.publishedAt());
-        context.put("lastModified", post.lastModified());
-        context.put("categories", post.categories());
-        context.put("tags", post.tags());
-        context.put("published", post.isPublished());
-        context.putAll(post.frontMatter());
-        return context;
+    private void collectTemplateSources(CompiledTemplate template, Map<String, CompiledTemplate> involved,
+                                        List<String> sources) {
+        involved.put(template.name(), template);
+        sources.add(template.name());
+        sources.add(template.source());
+        
+        for (String partial : template.partials()) {
+            if (involved.containsKey(partial)) {
+                continue;
+            }
+            CompiledTemplate resolved = resolvePartial(partial);
+            if (resolved != null) {
+                collectTemplateSources(resolved, involved, sources);
+            } else {
+                involved.put(partial, null);
+                sources.add(partial);
+            }
+        }
     }
     
     private String escapeXml(String text) {
@@ -318,4 +443,76 @@ public class HtmlGenerator {
                   .replace("\"", "&quot;")
                   .replace("'", "&apos;");
     }
-}
\ No newline at end of file
+    
+    private record TemplateVersion(CompiledTemplate root, Map<String, CompiledTemplate> involved, String version) {
+        boolean isCurrent(PartialResolver resolver) {
+            for (Map.Entry<String, CompiledTemplate> entry : involved.entrySet()) {
+                if (resolver.resolve(entry.getKey()) != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * 出力先へ書き込みながら、上限の長さまで内容を記録する
+     */
+    private static final class CapturingAppendable implements Appendable {
+        private final Appendable out;
+        private final int limit;
+        private StringBuilder captured = new StringBuilder();
+        
+        private CapturingAppendable(Appendable out, int limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+        
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            out.append(csq);
+            capture(csq, 0, csq.length());
+            return this;
+        }
+        
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            out.append(csq, start, end);
+            capture(csq, start, end);
+            return this;
+        }
+        
+        @Override
+        public Appendable append(char c) throws IOException {
+            out.append(c);
+            if (captured != null) {
+                if (captured.length() < limit) {
+                    captured.append(c);
+                } else {
+                    captured = null;
+                }
+            }
+            return this;
+        }
+        
+        private void capture(CharSequence csq, int start, int end) {
+            if (captured == null) {
+                return;
+            }
+            if (captured.length() + (end - start) > limit) {
+                // 上限を超えた出力は記録をやめてストリーミングのみにする
+                captured = null;
+                return;
+            }
+            captured.append(csq, start, end);
+        }
+        
+        boolean isComplete() {
+            return captured != null;
+        }
+        
+        String captured() {
+            return captured.toString();
+        }
+    }
+}
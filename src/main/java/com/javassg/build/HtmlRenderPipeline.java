@@ -0,0 +1,186 @@
+package com.javassg.build;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * テンプレートの出力を出力ファイルへ直接書き込むHTML生成パイプライン
+ *
+ * 各ワーカーはレンダリング結果を（本番ビルドでは{@link StreamingHtmlMinifier}を通して）
+ * UTF-8でバッファリングされたファイルチャネルへ流し込む。ページ全体を文字列として
+ * 保持しないため、ワーカーあたりのメモリ使用量はエンコード用のバッファ分で一定になる。
+ * ファイルへの書き込みに要した時間をレンダリング時間と分けて集計し、
+ * CPUとディスクのどちらが律速かを判断できるようにする。
+ * 出力は{@link SkipUnchangedChannel}で既存のファイルと比較しながら書き込み、
+ * 内容が変わらなかったファイルは書き換えずに更新時刻を保つ。
+ */
+public class HtmlRenderPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(HtmlRenderPipeline.class);
+
+    private final int workers;
+    private final boolean minify;
+
+    public HtmlRenderPipeline(int workers, boolean minify) {
+        this.workers = workers;
+        this.minify = minify;
+    }
+
+    public PipelineResult run(List<RenderJob> jobs) throws IOException {
+        long startTime = System.nanoTime();
+
+        if (jobs.isEmpty()) {
+            return new PipelineResult(0, 0, new StageTimings(0, 0, 0));
+        }
+
+        AtomicInteger nextJob = new AtomicInteger(0);
+        AtomicInteger writtenFiles = new AtomicInteger(0);
+        AtomicInteger unchangedFiles = new AtomicInteger(0);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        LongAdder totalNanos = new LongAdder();
+        LongAdder writeNanos = new LongAdder();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(
+                workers, Thread.ofPlatform().name("html-render-", 1).daemon(true).factory())) {
+            for (int i = 0; i < workers; i++) {
+                executor.submit(() -> {
+                    int index;
+                    while (failure.get() == null && (index = nextJob.getAndIncrement()) < jobs.size()) {
+                        try {
+                            long begin = System.nanoTime();
+                            if (!renderToFile(jobs.get(index), writeNanos)) {
+                                unchangedFiles.incrementAndGet();
+                            }
+                            totalNanos.add(System.nanoTime() - begin);
+                            writtenFiles.incrementAndGet();
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+
+        rethrow(failure.get());
+
+        StageTimings timings = new StageTimings(
+            toMillis(totalNanos.sum() - writeNanos.sum()),
+            toMillis(writeNanos.sum()),
+            toMillis(System.nanoTime() - startTime)
+        );
+
+        logger.info("HTML生成ステージ時間: レンダリング={}ms, 書き込み={}ms (経過時間 {}ms), 内容が同じため書き換えなかったファイル {}/{}件",
+                   timings.renderMs(), timings.writeMs(), timings.wallMs(), unchangedFiles.get(), writtenFiles.get());
+
+        return new PipelineResult(writtenFiles.get(), unchangedFiles.get(), timings);
+    }
+
+    /**
+     * @return ファイルの内容を変更した場合は true
+     */
+    private boolean renderToFile(RenderJob job, LongAdder writeNanos) throws IOException {
+        Path outputPath = job.outputPath();
+        Files.createDirectories(outputPath.toAbsolutePath().getParent());
+
+        SkipUnchangedChannel channel = new SkipUnchangedChannel(outputPath);
+        try (Writer writer = Channels.newWriter(new TimedChannel(channel, writeNanos), StandardCharsets.UTF_8)) {
+            if (minify) {
+                StreamingHtmlMinifier minifier = new StreamingHtmlMinifier(writer);
+                job.renderer().renderTo(minifier);
+                minifier.finish();
+            } else {
+                job.renderer().renderTo(writer);
+            }
+            // レンダリングが最後まで終わった場合だけ出力ファイルを置き換える
+            writer.flush();
+            channel.commit();
+        }
+
+        if (channel.isModified()) {
+            logger.debug("HTMLファイルを書き込みました: {}", outputPath);
+        } else {
+            logger.debug("HTMLファイルの内容が同じため書き込みを省略しました: {}", outputPath);
+        }
+        return channel.isModified();
+    }
+
+    private void rethrow(Throwable failure) throws IOException {
+        if (failure == null) {
+            return;
+        }
+        if (failure instanceof IOException e) {
+            throw e;
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        throw new BuildException("HTML生成に失敗しました: " + failure.getMessage(), failure);
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * 下位チャネルへの書き込み時間を計測するチャネル
+     */
+    private record TimedChannel(WritableByteChannel channel, LongAdder writeNanos) implements WritableByteChannel {
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            long begin = System.nanoTime();
+            try {
+                return channel.write(src);
+            } finally {
+                writeNanos.add(System.nanoTime() - begin);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * 1つの出力ファイルの内容を書き出す処理
+     */
+    @FunctionalInterface
+    public interface HtmlRenderer {
+        void renderTo(Appendable out) throws IOException;
+    }
+
+    // Record classes for return types
+    public record RenderJob(Path outputPath, HtmlRenderer renderer) {}
+
+    /**
+     * @param writtenFiles   生成した出力ファイルの数（内容が同じで書き換えなかったものを含む）
+     * @param unchangedFiles そのうち既存のファイルと内容が同じだったため書き換えなかった数
+     */
+    public record PipelineResult(int writtenFiles, int unchangedFiles, StageTimings timings) {}
+
+    public record StageTimings(long renderMs, long writeMs, long wallMs) {}
+}
@@ -0,0 +1,173 @@
+package com.javassg.build;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 出力ディレクトリを入れ替えて公開するための作業ディレクトリ
+ *
+ * 出力ディレクトリ（例: {@code _site}）は、隣に置いた2つの実ディレクトリ
+ * {@code .<名前>.a} と {@code .<名前>.b} のどちらかを指すシンボリックリンクとして扱う。
+ * ビルドは公開されていない方のディレクトリに行い、完成したらリンクを一度のrenameで付け替えるため、
+ * 配信中のサーバーから書きかけのサイトが見えることはない。
+ * 作業ディレクトリには前回の出力をハードリンクで用意するので、変更のないファイルはコピーされない。
+ * 生成処理は既存のファイルを書き換えずに置き換える（{@link SkipUnchangedChannel}）ため、リンク元の公開中のファイルにも影響しない。
+ */
+final class OutputStaging {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputStaging.class);
+
+    private final Path output;
+    private final Path directory;
+    private final Path published;
+
+    private OutputStaging(Path output, Path directory, Path published) {
+        this.output = output;
+        this.directory = directory;
+        this.published = published;
+    }
+
+    /**
+     * 公開中でない方の作業ディレクトリを前回の出力で初期化する
+     */
+    static OutputStaging prepare(Path outputDir) throws IOException {
+        Path output = outputDir.toAbsolutePath().normalize();
+        Path published = Files.isSymbolicLink(output)
+            ? output.resolveSibling(Files.readSymbolicLink(output)).normalize()
+            : null;
+        Path slotA = output.resolveSibling("." + output.getFileName() + ".a");
+        Path slotB = output.resolveSibling("." + output.getFileName() + ".b");
+        Path directory = slotA.equals(published) ? slotB : slotA;
+
+        // 中断されたビルドの残りは使わない
+        deleteRecursively(directory);
+        if (Files.isDirectory(output)) {
+            linkTree(output.toRealPath(), directory);
+        } else {
+            Files.createDirectories(directory);
+        }
+        return new OutputStaging(output, directory, published);
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    /**
+     * 作業ディレクトリを出力ディレクトリとして公開し、それまで公開していたディレクトリを削除する
+     */
+    void publish() throws IOException {
+        Path previous = published;
+        if (Files.isDirectory(output, LinkOption.NOFOLLOW_LINKS)) {
+            // 実ディレクトリからの初回の切り替えだけは、一時的に出力ディレクトリが存在しない状態になる
+            previous = output.resolveSibling("." + output.getFileName() + ".old");
+            deleteRecursively(previous);
+            Files.move(output, previous, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        Path link = output.resolveSibling("." + output.getFileName() + ".link");
+        try {
+            Files.deleteIfExists(link);
+            Files.createSymbolicLink(link, directory.getFileName());
+            Files.move(link, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // シンボリックリンクを作れない環境ではディレクトリの名前を付け替える
+            logger.warn("シンボリックリンクを作成できないため、出力ディレクトリを名前の変更で入れ替えます: {}", e.getMessage());
+            Files.deleteIfExists(link);
+            if (Files.exists(output, LinkOption.NOFOLLOW_LINKS)) {
+                Files.delete(output);
+            }
+            Files.move(directory, output, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        logger.info("出力ディレクトリを入れ替えました: {} -> {}", output, directory.getFileName());
+
+        if (previous != null && !previous.equals(directory)) {
+            try {
+                deleteRecursively(previous);
+            } catch (IOException e) {
+                // 公開は完了しているため、残ったディレクトリは次回のビルドで削除する
+                logger.warn("以前の出力ディレクトリを削除できません: {}", previous, e);
+            }
+        }
+    }
+
+    /**
+     * ビルドに失敗した場合に作業ディレクトリを削除する。公開中の出力には触れない。
+     */
+    void discard() {
+        try {
+            deleteRecursively(directory);
+        } catch (IOException e) {
+            logger.warn("作業ディレクトリを削除できません: {}", directory, e);
+        }
+    }
+
+    /**
+     * ディレクトリ構成を再現し、ファイルはハードリンクで共有する。ハードリンクを作れない場合はコピーする。
+     */
+    private static void linkTree(Path source, Path target) throws IOException {
+        int[] counts = new int[2];
+        boolean[] linkable = {true};
+
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path copy = target.resolve(source.relativize(file).toString());
+                if (linkable[0]) {
+                    try {
+                        Files.createLink(copy, file);
+                        counts[0]++;
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        logger.debug("ハードリンクを作成できないため、以降はコピーします: {}", e.getMessage());
+                        linkable[0] = false;
+                    }
+                }
+                Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                counts[1]++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        logger.debug("前回の出力を作業ディレクトリに用意しました: リンク{}件, コピー{}件", counts[0], counts[1]);
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package com.javassg.build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 既存の出力ファイルと比較しながら書き込むチャネル
+ *
+ * 書き込まれたバイトを既存ファイルの同じ位置の内容と比べ、内容が最後まで一致した場合は
+ * ファイルに一切書き込まないため、更新時刻が変わらず、rsyncやCDNへの同期で未変更のファイルとして扱われる。
+ * 異なる位置が見つかった場合は、一致した部分をコピーした一時ファイルに残りを書き込み、閉じるときに置き換える。
+ * 既存のファイル自体は書き換えないため、読み込み中の相手に書きかけの内容が見えることはなく、
+ * 他のディレクトリとハードリンクで共有しているファイルにも影響しない。
+ * 置き換えるのは{@link #commit()}を呼んでから閉じた場合だけで、途中で失敗して閉じた場合は既存のファイルを残す。
+ * 比較のために内容全体を保持することはない。
+ */
+final class SkipUnchangedChannel implements WritableByteChannel {
+
+    private static final int COMPARE_BUFFER_BYTES = 8192;
+
+    private final Path path;
+    private final FileChannel existing;
+    private final ByteBuffer compareBuffer = ByteBuffer.allocate(COMPARE_BUFFER_BYTES);
+    private Path temporary;
+    private FileChannel replacement;
+    private long position;
+    private boolean committed;
+    private boolean open = true;
+
+    SkipUnchangedChannel(Path path) throws IOException {
+        this.path = path;
+        this.existing = openExisting(path);
+    }
+
+    /**
+     * 内容が既存のファイルと異なる場合だけ書き込む
+     *
+     * @return 書き込んだ場合は true、既存のファイルと同じ内容だった場合は false
+     */
+    static boolean write(Path path, byte[] content) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        if (Files.isRegularFile(path) && Files.size(path) == content.length
+                && Arrays.equals(Files.readAllBytes(path), content)) {
+            return false;
+        }
+        SkipUnchangedChannel channel = new SkipUnchangedChannel(path);
+        try (channel) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.commit();
+        }
+        return channel.isModified();
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        if (replacement == null) {
+            skipMatchingPrefix(src);
+        }
+        while (src.hasRemaining()) {
+            position += replacement.write(src);
+        }
+        return length;
+    }
+
+    /**
+     * 既存の内容と一致する先頭部分を読み飛ばす。一致しない位置が見つかった時点で一時ファイルへの書き込みに切り替える。
+     */
+    private void skipMatchingPrefix(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            compareBuffer.clear().limit(Math.min(compareBuffer.capacity(), src.remaining()));
+            int read = existing == null ? -1 : existing.read(compareBuffer, position);
+            if (read <= 0) {
+                startReplacement();
+                return;
+            }
+            compareBuffer.flip();
+
+            int mismatch = src.slice(src.position(), read).mismatch(compareBuffer);
+            int matched = mismatch < 0 ? read : mismatch;
+            src.position(src.position() + matched);
+            position += matched;
+            if (mismatch >= 0) {
+                startReplacement();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 置き換え用の一時ファイルを作り、ここまで一致した部分を既存のファイルからコピーする
+     */
+    private void startReplacement() throws IOException {
+        temporary = path.resolveSibling("." + path.getFileName() + "."
+            + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        replacement = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        long copied = 0;
+        while (copied < position) {
+            long count = existing.transferTo(copied, position - copied, replacement);
+            if (count <= 0) {
+                throw new IOException("既存のファイルを読み込めません: " + path);
+            }
+            copied += count;
+        }
+    }
+
+    /**
+     * 書き込みが完了したことを記録する。閉じたときに、これを呼んだ場合だけ既存のファイルを置き換える。
+     */
+    void commit() {
+        committed = true;
+    }
+
+    /**
+     * ファイルの内容を変更したか。閉じた後は末尾の切り詰めも含めて判定する。
+     */
+    boolean isModified() {
+        return replacement != null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+
+        boolean replaced = false;
+        try {
+            if (!committed) {
+                // 書き込みが途中で失敗した場合は、書きかけの内容で既存のファイルを置き換えない
+                return;
+            }
+            if (replacement == null && (existing == null || existing.size() > position)) {
+                // 新しいファイル、または既存のファイルの方が長い場合
+                startReplacement();
+            }
+            if (replacement != null) {
+                replacement.close();
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                replaced = true;
+            }
+        } finally {
+            if (existing != null) {
+                existing.close();
+            }
+            if (replacement != null && !replaced) {
+                replacement.close();
+                Files.deleteIfExists(temporary);
+                replacement = null;
+            }
+        }
+    }
+
+    private static FileChannel openExisting(Path path) throws IOException {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
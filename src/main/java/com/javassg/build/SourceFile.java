@@ -0,0 +1,31 @@
+package com.javassg.build;
+
+import com.javassg.parser.MarkdownFile;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * ビルド入力となるファイルと、走査時に取得した属性
+ */
+public record SourceFile(Path path, long size, long lastModifiedMillis) {
+
+    public static SourceFile of(Path path, BasicFileAttributes attrs) {
+        return new SourceFile(path, attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * 走査時の属性を付けたまま解析器に渡すための形
+     */
+    public MarkdownFile toMarkdownFile() {
+        return new MarkdownFile(path, size, FileTime.fromMillis(lastModifiedMillis));
+    }
+
+    /**
+     * マニフェスト上でこのファイルを識別するキー
+     */
+    public String key() {
+        return path.toAbsolutePath().normalize().toString();
+    }
+}
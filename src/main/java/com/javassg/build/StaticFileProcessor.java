@@ -1,5 +1,6 @@
 package com.javassg.build;
 
+import com.javassg.model.BuildConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +11,11 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
@@ -26,15 +32,94 @@ public class StaticFileProcessor {
     private static final Pattern HIDDEN_FILE_PATTERN = Pattern.compile("^\\.");
     private static final Pattern MARKDOWN_PATTERN = Pattern.compile(".*\\.md$", Pattern.CASE_INSENSITIVE);
     
+    private final int parallelism;
+    private final boolean hardLinks;
+    
+    private final Set<Path> syncedFiles = ConcurrentHashMap.newKeySet();
+    
     private WatchService watchService;
     private volatile boolean watching = false;
     
+    public StaticFileProcessor() {
+        this(BuildConfig.defaultParallelism(), false);
+    }
+    
+    /**
+     * @param parallelism コピーを並列に行うスレッド数
+     * @param hardLinks   出力先が同じファイルシステム上にある場合、コピーせずハードリンクを作るか
+     */
+    public StaticFileProcessor(int parallelism, boolean hardLinks) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("並列度は1以上である必要があります");
+        }
+        this.parallelism = parallelism;
+        this.hardLinks = hardLinks;
+    }
+    
+    /**
+     * 静的ファイルを出力ディレクトリへコピーする
+     *
+     * ソースを1回だけ走査して対象ファイルとコピー先のディレクトリを決め、ディレクトリはそれぞれ1回だけ作成する。
+     * コピーはスレッドプールで並列に行い、コピー先のサイズと更新時刻がソースと一致するファイルは再コピーしない。
+     * コピー時は更新時刻も複製するため、次回以降のビルドでは変更されたファイルだけがコピーされる。
+     */
     public ProcessingStatistics processStaticFiles(Path sourceDir, Path outputDir) throws IOException {
+        return copyStaticFiles(sourceDir, outputDir, hardLinks);
+    }
+    
+    /**
+     * 前回のビルドから変更された静的ファイルだけをコピーする
+     *
+     * ディレクトリは走査せず、ビルドマニフェストと比較済みの走査結果を使う。
+     * 内容ハッシュが変わったファイルと、コピー先が存在しないファイルだけをコピーし、
+     * それ以外のファイルには触れない。削除されたソースの出力はマニフェストの出力一覧から削除される。
+     *
+     * @param sources     静的ファイルディレクトリを走査した結果
+     * @param changedKeys 前回のビルドから内容が変わったファイルのキー（{@link SourceFile#key()}）
+     */
+    public ProcessingStatistics syncStaticFiles(Path sourceDir, Path outputDir, List<SourceFile> sources,
+                                                Set<String> changedKeys) throws IOException {
+        long startTime = System.currentTimeMillis();
+        int totalFiles = 0;
+        int skippedFiles = 0;
+        int processedFiles = 0;
+        long totalSize = 0;
+        List<CopyTask> tasks = new ArrayList<>();
+        Set<Path> createdDirectories = new HashSet<>();
+        
+        for (SourceFile source : sources) {
+            Path relativePath = sourceDir.relativize(source.path());
+            if (isInHiddenDirectory(relativePath)) {
+                continue;
+            }
+            totalFiles++;
+            if (!isCopyTarget(source.path(), source.size())) {
+                skippedFiles++;
+                continue;
+            }
+            processedFiles++;
+            totalSize += source.size();
+            
+            Path targetPath = outputDir.resolve(relativePath);
+            if (changedKeys.contains(source.key()) || Files.notExists(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+                if (createdDirectories.add(targetPath.getParent())) {
+                    Files.createDirectories(targetPath.getParent());
+                }
+                tasks.add(new CopyTask(source.path(), targetPath));
+            }
+        }
+        
+        CopyCounts counts = copyAll(tasks, hardLinks);
+        long processingTime = System.currentTimeMillis() - startTime;
+        
+        logger.info("静的ファイル同期完了: {}個のファイルのうち{}個を更新 (コピー{}, リンク{}) ({}ms)",
+                   processedFiles, counts.copied() + counts.linked(), counts.copied(), counts.linked(), processingTime);
+        
+        return new ProcessingStatistics(totalFiles, processedFiles, skippedFiles, processingTime, totalSize);
+    }
+    
+    private ProcessingStatistics copyStaticFiles(Path sourceDir, Path outputDir, boolean linkFiles) throws IOException {
         long startTime = System.currentTimeMillis();
-        final AtomicInteger totalFiles = new AtomicInteger(0);
-        final AtomicInteger processedFiles = new AtomicInteger(0);
-        final AtomicInteger skippedFiles = new AtomicInteger(0);
-        final AtomicLong totalSize = new AtomicLong(0);
         
         if (!Files.exists(sourceDir)) {
             logger.warn("静的ファイルディレクトリが存在しません: {}", sourceDir);
@@ -43,59 +128,49 @@ public class StaticFileProcessor {
         
         Files.createDirectories(outputDir);
         
+        ScanResult scan = scan(sourceDir, outputDir);
+        CopyCounts counts = copyAll(scan.tasks(), linkFiles);
+        
+        long processingTime = System.currentTimeMillis() - startTime;
+        int processedFilesCount = scan.tasks().size();
+        
+        logger.info("静的ファイル処理完了: {}個のファイルを処理 (コピー{}, リンク{}, 未変更{}) ({}ms)",
+                   processedFilesCount, counts.copied(), counts.linked(), counts.unchanged(), processingTime);
+        
+        return new ProcessingStatistics(scan.totalFiles(), processedFilesCount, scan.skippedFiles(),
+                                        processingTime, scan.totalSizeBytes());
+    }
+    
+    /**
+     * ソースを1回だけ走査してコピー対象を集める。コピー先のディレクトリはここで作成する。
+     */
+    private ScanResult scan(Path sourceDir, Path outputDir) throws IOException {
+        final AtomicInteger totalFiles = new AtomicInteger(0);
+        final AtomicInteger skippedFiles = new AtomicInteger(0);
+        final AtomicLong totalSize = new AtomicLong(0);
+        List<CopyTask> tasks = new ArrayList<>();
+        Set<Path> createdDirectories = new HashSet<>();
+        
         Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                 totalFiles.incrementAndGet();
                 
-                String fileName = file.getFileName().toString();
-                
-                // 隠しファイルをスキップ
-                if (HIDDEN_FILE_PATTERN.matcher(fileName).find()) {
+                if (!isCopyTarget(file, attrs.size())) {
                     skippedFiles.incrementAndGet();
                     return FileVisitResult.CONTINUE;
                 }
                 
-                // Markdownファイルをスキップ
-                if (MARKDOWN_PATTERN.matcher(fileName).matches()) {
-                    skippedFiles.incrementAndGet();
-                    return FileVisitResult.CONTINUE;
-                }
-                
-                // ファイルサイズチェック
-                if (attrs.size() > MAX_FILE_SIZE) {
-                    throw new StaticFileProcessingException(
-                        String.format("ファイルサイズが上限を超えています: %s (%d bytes)", file, attrs.size())
-                    );
-                }
-                
-                // ファイル形式チェック
-                String extension = getFileExtension(fileName);
-                if (!ALLOWED_EXTENSIONS.contains(extension)) {
-                    throw new StaticFileProcessingException(
-                        String.format("許可されていないファイル形式: %s", file)
-                    );
-                }
-                
                 Path relativePath = sourceDir.relativize(file);
                 Path targetPath = outputDir.resolve(relativePath);
                 
-                Files.createDirectories(targetPath.getParent());
-                
-                // シンボリックリンクの場合は実際のファイルをコピー
-                if (Files.isSymbolicLink(file)) {
-                    Path realFile = Files.readSymbolicLink(file);
-                    if (Files.exists(realFile)) {
-                        Files.copy(realFile, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                    }
-                } else {
-                    Files.copy(file, targetPath, StandardCopyOption.REPLACE_EXISTING);
+                // コピー先のディレクトリは最初のファイルのときだけ作成する
+                if (createdDirectories.add(targetPath.getParent())) {
+                    Files.createDirectories(targetPath.getParent());
                 }
                 
+                tasks.add(new CopyTask(file, targetPath));
                 totalSize.addAndGet(attrs.size());
-                processedFiles.incrementAndGet();
-                
-                logger.debug("静的ファイルをコピーしました: {} -> {}", file, targetPath);
                 return FileVisitResult.CONTINUE;
             }
             
@@ -112,19 +187,152 @@ public class StaticFileProcessor {
             }
         });
         
-        long processingTime = System.currentTimeMillis() - startTime;
-        int totalFilesCount = totalFiles.get();
-        int processedFilesCount = processedFiles.get();
-        int skippedFilesCount = skippedFiles.get();
-        long totalSizeBytes = totalSize.get();
+        return new ScanResult(tasks, totalFiles.get(), skippedFiles.get(), totalSize.get());
+    }
+    
+    /**
+     * コピー対象のファイルか判定する。隠しファイルとMarkdownは対象外とし、
+     * サイズや形式が許可されないファイルは例外とする。
+     */
+    private boolean isCopyTarget(Path file, long size) {
+        String fileName = file.getFileName().toString();
+        
+        // 隠しファイルとMarkdownファイルをスキップ
+        if (shouldSkipFile(fileName)) {
+            return false;
+        }
+        
+        // ファイルサイズチェック
+        if (size > MAX_FILE_SIZE) {
+            throw new StaticFileProcessingException(
+                String.format("ファイルサイズが上限を超えています: %s (%d bytes)", file, size)
+            );
+        }
+        
+        // ファイル形式チェック
+        String extension = getFileExtension(fileName);
+        if (!ALLOWED_EXTENSIONS.contains(extension)) {
+            throw new StaticFileProcessingException(
+                String.format("許可されていないファイル形式: %s", file)
+            );
+        }
+        
+        return true;
+    }
+    
+    private boolean isInHiddenDirectory(Path relativePath) {
+        for (int i = 0; i < relativePath.getNameCount() - 1; i++) {
+            if (HIDDEN_FILE_PATTERN.matcher(relativePath.getName(i).toString()).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private CopyCounts copyAll(List<CopyTask> tasks, boolean linkFiles) throws IOException {
+        AtomicInteger copied = new AtomicInteger(0);
+        AtomicInteger linked = new AtomicInteger(0);
+        AtomicInteger unchanged = new AtomicInteger(0);
+        AtomicBoolean linkable = new AtomicBoolean(linkFiles);
+        
+        try (ExecutorService executor = Executors.newFixedThreadPool(
+                parallelism, Thread.ofPlatform().name("static-copy-", 1).daemon(true).factory())) {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (CopyTask task : tasks) {
+                futures.add(executor.submit(() -> {
+                    switch (copy(task, linkable)) {
+                        case COPIED -> copied.incrementAndGet();
+                        case LINKED -> linked.incrementAndGet();
+                        case UNCHANGED -> unchanged.incrementAndGet();
+                        case MISSING -> { }
+                    }
+                    return null;
+                }));
+            }
+            
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    throw new StaticFileProcessingException("静的ファイルのコピーに失敗しました: " + e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new StaticFileProcessingException("静的ファイルのコピーが中断されました", e);
+                }
+            }
+        }
         
-        logger.info("静的ファイル処理完了: {}個のファイルを処理 ({}ms)", processedFilesCount, processingTime);
+        return new CopyCounts(copied.get(), linked.get(), unchanged.get());
+    }
+    
+    private CopyOutcome copy(CopyTask task, AtomicBoolean linkable) throws IOException {
+        Path source = task.source();
         
-        return new ProcessingStatistics(totalFilesCount, processedFilesCount, skippedFilesCount, processingTime, totalSizeBytes);
+        // シンボリックリンクの場合は実際のファイルをコピー
+        if (Files.isSymbolicLink(source)) {
+            source = Files.readSymbolicLink(source);
+            if (!Files.exists(source)) {
+                return CopyOutcome.MISSING;
+            }
+        }
+        
+        if (isUpToDate(source, task.target(), linkable.get())) {
+            return CopyOutcome.UNCHANGED;
+        }
+        
+        if (linkable.get()) {
+            try {
+                Files.deleteIfExists(task.target());
+                Files.createLink(task.target(), source);
+                logger.debug("静的ファイルをリンクしました: {} -> {}", source, task.target());
+                return CopyOutcome.LINKED;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // 別のファイルシステムなどでリンクできない場合は、以降のファイルもコピーする
+                if (linkable.compareAndSet(true, false)) {
+                    logger.info("ハードリンクを作成できないため静的ファイルをコピーします: {}", e.getMessage());
+                }
+            }
+        }
+        
+        // ソースとリンクされたファイルに上書きコピーすると何もされないため、先に削除する
+        Files.deleteIfExists(task.target());
+        Files.copy(source, task.target(), StandardCopyOption.COPY_ATTRIBUTES);
+        logger.debug("静的ファイルをコピーしました: {} -> {}", source, task.target());
+        return CopyOutcome.COPIED;
+    }
+    
+    /**
+     * コピー先のサイズと更新時刻がソースと一致する場合は、前回コピーした内容のままとみなす。
+     * ハードリンクを使わない場合は、以前のビルドでソースとリンクされたファイルを独立したコピーに置き換える。
+     */
+    private static boolean isUpToDate(Path source, Path target, boolean allowLinked) throws IOException {
+        BasicFileAttributes targetAttributes;
+        try {
+            targetAttributes = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+        if (!allowLinked && targetAttributes.fileKey() != null
+                && targetAttributes.fileKey().equals(sourceAttributes.fileKey())) {
+            return false;
+        }
+        return targetAttributes.isRegularFile()
+            && targetAttributes.size() == sourceAttributes.size()
+            // コピー時に複製される更新時刻はファイルシステムによって精度が落ちるため、ミリ秒単位で比較する
+            && targetAttributes.lastModifiedTime().toMillis() == sourceAttributes.lastModifiedTime().toMillis();
     }
     
     public OptimizationResult processStaticFilesWithOptimization(Path sourceDir, Path outputDir) throws IOException {
-        ProcessingStatistics stats = processStaticFiles(sourceDir, outputDir);
+        // 出力を直接書き換えるため、ソースとファイルを共有するハードリンクは使わない
+        ProcessingStatistics stats = copyStaticFiles(sourceDir, outputDir, false);
         
         Map<String, OptimizedImage> optimizedImages = new ConcurrentHashMap<>();
         long totalSizeReduction = 0;
@@ -186,7 +394,8 @@ public class StaticFileProcessor {
     }
     
     public void processStaticFilesWithMinification(Path sourceDir, Path outputDir) throws IOException {
-        processStaticFiles(sourceDir, outputDir);
+        // 出力を直接書き換えるため、ソースとファイルを共有するハードリンクは使わない
+        copyStaticFiles(sourceDir, outputDir, false);
         
         Files.walkFileTree(outputDir, new SimpleFileVisitor<Path>() {
             @Override
@@ -204,41 +413,41 @@ public class StaticFileProcessor {
         });
     }
     
+    /**
+     * 静的ファイルディレクトリを監視し、変更を出力ディレクトリへ反映する
+     *
+     * サブディレクトリも含めて監視し、作成・変更されたファイルのコピーに加えて、
+     * 削除されたファイルやディレクトリに対応する出力も削除する。
+     * 監視中は出力へ反映したファイルの一覧を保持し、ディレクトリごと削除された場合や
+     * イベントが溢れて再走査した場合に、どの出力を削除すればよいかをそこから判断する。
+     */
     public void startWatching(Path sourceDir, Path outputDir) throws IOException {
         this.watchService = FileSystems.getDefault().newWatchService();
         this.watching = true;
         
-        registerDirectory(sourceDir);
+        syncedFiles.clear();
+        for (CopyTask task : scan(sourceDir, outputDir).tasks()) {
+            syncedFiles.add(sourceDir.relativize(task.source()));
+        }
+        registerDirectoryRecursively(sourceDir);
         
         Thread watchThread = new Thread(() -> {
             try {
                 while (watching) {
                     WatchKey key = watchService.take();
+                    Path watchedDir = (Path) key.watchable();
                     
                     for (WatchEvent<?> event : key.pollEvents()) {
                         if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            resync(sourceDir, outputDir);
                             continue;
                         }
                         
-                        @SuppressWarnings("unchecked")
-                        WatchEvent<Path> pathEvent = (WatchEvent<Path>) event;
-                        Path changed = pathEvent.context();
-                        
-                        if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY ||
-                            event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
-                            
-                            Path sourcePath = sourceDir.resolve(changed);
-                            Path targetPath = outputDir.resolve(changed);
-                            
-                            if (Files.exists(sourcePath) && !shouldSkipFile(changed.toString())) {
-                                try {
-                                    Files.createDirectories(targetPath.getParent());
-                                    Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                                    logger.debug("ファイルが更新されました: {}", changed);
-                                } catch (IOException e) {
-                                    logger.error("ファイル更新エラー: " + changed, e);
-                                }
-                            }
+                        Path changed = watchedDir.resolve((Path) event.context());
+                        try {
+                            applyChange(event.kind(), sourceDir, outputDir, changed);
+                        } catch (IOException | StaticFileProcessingException e) {
+                            logger.error("ファイル更新エラー: " + changed, e);
                         }
                     }
                     
@@ -247,6 +456,8 @@ public class StaticFileProcessor {
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 logger.info("ファイル監視が中断されました");
+            } catch (ClosedWatchServiceException e) {
+                logger.debug("ファイル監視を終了します");
             } catch (Exception e) {
                 logger.error("ファイル監視エラー", e);
             }
@@ -270,11 +481,108 @@ public class StaticFileProcessor {
         logger.info("ファイル監視を停止しました");
     }
     
-    private void registerDirectory(Path dir) throws IOException {
-        dir.register(watchService,
-            StandardWatchEventKinds.ENTRY_CREATE,
-            StandardWatchEventKinds.ENTRY_MODIFY,
-            StandardWatchEventKinds.ENTRY_DELETE);
+    private void applyChange(WatchEvent.Kind<?> kind, Path sourceDir, Path outputDir, Path changed) throws IOException {
+        Path relativePath = sourceDir.relativize(changed);
+        Path targetPath = outputDir.resolve(relativePath);
+        
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            removeSynced(relativePath, outputDir);
+            return;
+        }
+        if (isInHiddenDirectory(relativePath) || HIDDEN_FILE_PATTERN.matcher(changed.getFileName().toString()).find()) {
+            return;
+        }
+        
+        if (Files.isDirectory(changed)) {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                // 新しいディレクトリは監視に加え、作成時点で中にあるファイルをコピーする
+                registerDirectoryRecursively(changed);
+                for (CopyTask task : scan(changed, targetPath).tasks()) {
+                    copy(task, new AtomicBoolean(hardLinks));
+                    syncedFiles.add(sourceDir.relativize(task.source()));
+                }
+            }
+            return;
+        }
+        
+        if (Files.isRegularFile(changed) && isCopyTarget(changed, Files.size(changed))) {
+            Files.createDirectories(targetPath.getParent());
+            if (copy(new CopyTask(changed, targetPath), new AtomicBoolean(hardLinks)) != CopyOutcome.UNCHANGED) {
+                logger.debug("ファイルが更新されました: {}", relativePath);
+            }
+            syncedFiles.add(relativePath);
+        }
+    }
+    
+    /**
+     * 削除されたソースに対応する出力を削除する。ディレクトリが削除された場合は、その下から反映したファイルを全て削除する。
+     */
+    private void removeSynced(Path relativePath, Path outputDir) throws IOException {
+        List<Path> removed = syncedFiles.stream()
+            .filter(synced -> synced.startsWith(relativePath))
+            .toList();
+        for (Path synced : removed) {
+            syncedFiles.remove(synced);
+            Path target = outputDir.resolve(synced);
+            Files.deleteIfExists(target);
+            deleteEmptyParents(target.getParent(), outputDir);
+            logger.debug("ファイルが削除されました: {}", synced);
+        }
+    }
+    
+    /**
+     * イベントが溢れた場合は全体を走査し直し、コピーと削除をまとめて反映する
+     */
+    private void resync(Path sourceDir, Path outputDir) {
+        try {
+            logger.debug("イベントオーバーフローにより静的ファイルを再同期します: {}", sourceDir);
+            List<CopyTask> tasks = scan(sourceDir, outputDir).tasks();
+            copyAll(tasks, hardLinks);
+            
+            Set<Path> current = new HashSet<>();
+            for (CopyTask task : tasks) {
+                current.add(sourceDir.relativize(task.source()));
+            }
+            for (Path synced : List.copyOf(syncedFiles)) {
+                if (!current.contains(synced)) {
+                    removeSynced(synced, outputDir);
+                }
+            }
+            syncedFiles.addAll(current);
+        } catch (IOException | StaticFileProcessingException e) {
+            logger.error("静的ファイルの再同期エラー: " + sourceDir, e);
+        }
+    }
+    
+    private static void deleteEmptyParents(Path dir, Path outputDir) throws IOException {
+        while (dir != null && dir.startsWith(outputDir) && !dir.equals(outputDir)) {
+            try (var children = Files.list(dir)) {
+                if (children.findAny().isPresent()) {
+                    return;
+                }
+            } catch (NoSuchFileException e) {
+                dir = dir.getParent();
+                continue;
+            }
+            Files.delete(dir);
+            dir = dir.getParent();
+        }
+    }
+    
+    private void registerDirectoryRecursively(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) throws IOException {
+                if (!directory.equals(dir) && HIDDEN_FILE_PATTERN.matcher(directory.getFileName().toString()).find()) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
     }
     
     private boolean shouldSkipFile(String fileName) {
@@ -318,7 +626,17 @@ public class StaticFileProcessor {
             .trim();
     }
     
+    private enum CopyOutcome {
+        COPIED, LINKED, UNCHANGED, MISSING
+    }
+    
     // Record classes for return types
+    private record CopyTask(Path source, Path target) {}
+    
+    private record CopyCounts(int copied, int linked, int unchanged) {}
+    
+    private record ScanResult(List<CopyTask> tasks, int totalFiles, int skippedFiles, long totalSizeBytes) {}
+    
     public record ProcessingStatistics(
         int totalFiles,
         int processedFiles,
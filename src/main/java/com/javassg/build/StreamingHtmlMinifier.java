@@ -0,0 +1,133 @@
+package com.javassg.build;
+
+import java.io.IOException;
+
+/**
+ * 出力先へ書き込みながらHTMLを最小化する{@link Appendable}
+ *
+ * 次の規則を1文字ずつ適用するため、ページ全体を文字列として保持する必要がない。
+ * <ul>
+ *   <li>{@code <!-- -->} コメントを除去する</li>
+ *   <li>改行を含む空白の並びは除去する</li>
+ *   <li>タグ間（{@code >} と {@code <} の間）の空白は除去する</li>
+ *   <li>それ以外の2文字以上の空白は1つの空白にまとめる</li>
+ *   <li>先頭と末尾の空白は出力しない</li>
+ * </ul>
+ * 保持する状態は空白の並びの長さとコメント境界の照合位置だけで、メモリ使用量は一定である。
+ * 書き込みの最後には必ず{@link #finish()}を呼ぶこと。
+ */
+final class StreamingHtmlMinifier implements Appendable {
+
+    private static final String COMMENT_OPEN = "<!--";
+
+    private final Appendable out;
+
+    private int whitespaceLength;
+    private char firstWhitespace;
+    private boolean whitespaceHasNewline;
+    private char lastEmitted;
+    private int commentOpenMatched;
+    private boolean inComment;
+    private int commentDashes;
+
+    StreamingHtmlMinifier(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+        for (int i = start; i < end; i++) {
+            append(csq.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+        if (inComment) {
+            skipComment(c);
+            return this;
+        }
+
+        if (commentOpenMatched > 0) {
+            if (c == COMMENT_OPEN.charAt(commentOpenMatched)) {
+                if (++commentOpenMatched == COMMENT_OPEN.length()) {
+                    // コメントを挟んだ前後の空白は1つの並びとして扱う
+                    commentOpenMatched = 0;
+                    commentDashes = 0;
+                    inComment = true;
+                }
+                return this;
+            }
+            emitPendingCommentOpen();
+        }
+
+        if (isWhitespace(c)) {
+            if (whitespaceLength++ == 0) {
+                firstWhitespace = c;
+            }
+            whitespaceHasNewline |= c == '\n';
+        } else if (c == '<') {
+            commentOpenMatched = 1;
+        } else {
+            emit(c);
+        }
+        return this;
+    }
+
+    /**
+     * 保留中の文字を出力する。末尾の空白と閉じられていないコメントは出力しない。
+     */
+    void finish() throws IOException {
+        if (commentOpenMatched > 0) {
+            emitPendingCommentOpen();
+        }
+        whitespaceLength = 0;
+        whitespaceHasNewline = false;
+    }
+
+    private void skipComment(char c) {
+        if (c == '>' && commentDashes >= 2) {
+            inComment = false;
+        } else if (c == '-') {
+            commentDashes++;
+        } else {
+            commentDashes = 0;
+        }
+    }
+
+    private void emitPendingCommentOpen() throws IOException {
+        int matched = commentOpenMatched;
+        commentOpenMatched = 0;
+        for (int i = 0; i < matched; i++) {
+            emit(COMMENT_OPEN.charAt(i));
+        }
+    }
+
+    private void emit(char c) throws IOException {
+        if (whitespaceLength > 0) {
+            boolean keep = lastEmitted != 0
+                && !whitespaceHasNewline
+                && !(lastEmitted == '>' && c == '<');
+            if (keep) {
+                out.append(whitespaceLength > 1 ? ' ' : firstWhitespace);
+            }
+            whitespaceLength = 0;
+            whitespaceHasNewline = false;
+        }
+        out.append(c);
+        lastEmitted = c;
+    }
+
+    /**
+     * 正規表現の {@code \s} と同じ文字集合
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -3,27 +3,49 @@ package com.javassg.cache;
 import com.javassg.model.Page;
 import com.javassg.model.Post;
 import com.javassg.model.Template;
+import com.javassg.parser.MarkdownFile;
+import com.javassg.parser.MarkdownParser;
+import com.javassg.template.CompiledTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 public class CacheManager {
     
     private static final Logger logger = LoggerFactory.getLogger(CacheManager.class);
+    private static final String RENDER_KEY_PREFIX = "render:";
     
     private final ContentCache contentCache;
     private final TemplateCache templateCache;
     private final RenderCache renderCache;
+    private volatile DiskCache diskCache;
     
     public CacheManager() {
+        this(RenderCache.DEFAULT_MAX_WEIGHT_BYTES);
+    }
+    
+    /**
+     * @param renderCacheMaxBytes レンダリング結果のキャッシュに保持するおおよその最大バイト数
+     */
+    public CacheManager(long renderCacheMaxBytes) {
         this.contentCache = new ContentCache();
         this.templateCache = new TemplateCache();
-        this.renderCache = new RenderCache();
+        this.renderCache = new RenderCache(renderCacheMaxBytes);
     }
     
     public void cachePage(String key, Page page) {
@@ -35,6 +57,27 @@ public class CacheManager {
         return contentCache.getPage(key);
     }
     
+    /**
+     * ページをキャッシュし、ディスクキャッシュが有効な場合はソースの内容ハッシュをキーに保存する
+     */
+    public void cachePage(String key, Page page, String contentHash) {
+        cachePage(key, page);
+        persist(contentKey("page", page.filename(), contentHash), () -> ContentCodec.encodePage(page));
+    }
+    
+    /**
+     * ディスクキャッシュから解析済みのページを読み込む。見つかった場合はメモリ上のキャッシュにも登録する。
+     *
+     * @param lastModified 読み込んだページに設定するソースの最終更新日時
+     */
+    public Optional<Page> getPersistedPage(String filename, String contentHash, LocalDateTime lastModified) {
+        return readPersisted(contentKey("page", filename, contentHash), bytes -> {
+            Page page = ContentCodec.decodePage(bytes, lastModified);
+            contentCache.putPage(page.slug(), page);
+            return page;
+        });
+    }
+    
     public void cachePost(String key, Post post) {
         contentCache.putPost(key, post);
         logger.debug("投稿をキャッシュしました: {}", key);
@@ -44,6 +87,27 @@ public class CacheManager {
         return contentCache.getPost(key);
     }
     
+    /**
+     * 投稿をキャッシュし、ディスクキャッシュが有効な場合はソースの内容ハッシュをキーに保存する
+     */
+    public void cachePost(String key, Post post, String contentHash) {
+        cachePost(key, post);
+        persist(contentKey("post", post.filename(), contentHash), () -> ContentCodec.encodePost(post));
+    }
+    
+    /**
+     * ディスクキャッシュから解析済みの投稿を読み込む。見つかった場合はメモリ上のキャッシュにも登録する。
+     *
+     * @param lastModified 読み込んだ投稿に設定するソースの最終更新日時
+     */
+    public Optional<Post> getPersistedPost(String filename, String contentHash, LocalDateTime lastModified) {
+        return readPersisted(contentKey("post", filename, contentHash), bytes -> {
+            Post post = ContentCodec.decodePost(bytes, lastModified);
+            contentCache.putPost(post.slug(), post);
+            return post;
+        });
+    }
+    
     public void cacheTemplate(String name, Template template) {
         templateCache.putTemplate(name, template);
         
@@ -58,17 +122,40 @@ public class CacheManager {
         return templateCache.getTemplate(name);
     }
     
+    public Optional<CompiledTemplate> getCompiledTemplate(String name) {
+        return templateCache.getCompiledTemplate(name);
+    }
+    
     public void addTemplateDependency(String template, String dependency) {
         templateCache.addDependency(template, dependency);
     }
     
     public void cacheRendered(String key, String content, LocalDateTime timestamp) {
-        renderCache.putRendered(key, content, timestamp);
-        logger.debug("レンダリング結果をキャッシュしました: {}", key);
+        cacheRendered(key, content, timestamp, RenderCache.implicitTags(key));
+    }
+    
+    /**
+     * 依存するコンテンツ・テンプレート・コレクションのタグを付けてレンダリング結果をキャッシュする
+     */
+    public void cacheRendered(String key, String content, LocalDateTime timestamp, Set<String> tags) {
+        renderCache.putRendered(key, content, timestamp, tags);
+        persist(RENDER_KEY_PREFIX + key, () -> ContentCodec.encodeRendered(content, tags));
+        logger.debug("レンダリング結果をキャッシュしました: {} {}", key, tags);
     }
     
+    /**
+     * レンダリング結果を返す。メモリ上に無くディスクキャッシュにある場合は、メモリ上のキャッシュに戻してから返す。
+     */
     public Optional<String> getRendered(String key) {
-        return renderCache.getRendered(key);
+        Optional<String> rendered = renderCache.getRendered(key);
+        if (rendered.isPresent()) {
+            return rendered;
+        }
+        return readPersisted(RENDER_KEY_PREFIX + key, bytes -> {
+            ContentCodec.Rendered persisted = ContentCodec.decodeRendered(bytes);
+            renderCache.putRendered(key, persisted.content(), LocalDateTime.now(), persisted.tags());
+            return persisted.content();
+        });
     }
     
     public boolean isContentValid(String key, LocalDateTime lastModified) {
@@ -85,15 +172,116 @@ public class CacheManager {
     
     public void invalidateContentAndRelated(String key) {
         contentCache.remove(key);
-        renderCache.invalidateByPattern("*" + key + "*");
-        logger.debug("コンテンツと関連するキャッシュを無効化しました: {}", key);
+        int renders = renderCache.invalidateTag(contentTag(key));
+        logger.debug("コンテンツと関連するキャッシュを無効化しました: {} (レンダリング結果 {}件)", key, renders);
     }
     
     public void invalidateTemplateAndDependents(String templateName) {
-        templateCache.invalidateDependents(templateName);
+        Set<String> invalidated = templateCache.invalidateDependents(templateName);
         templateCache.remove(templateName);
-        renderCache.invalidateByPattern("*");
-        logger.debug("テンプレートと依存関係を無効化しました: {}", templateName);
+        int renders = 0;
+        for (String name : invalidated) {
+            renders += renderCache.invalidateTag(templateTag(name));
+        }
+        logger.debug("テンプレートと依存関係を無効化しました: {} -> {} (レンダリング結果 {}件)",
+                    templateName, invalidated, renders);
+    }
+    
+    /**
+     * コンテンツのキー（スラッグ）に依存するレンダリング結果のタグ
+     */
+    public static String contentTag(String key) {
+        return "content:" + key;
+    }
+    
+    /**
+     * テンプレートに依存するレンダリング結果のタグ
+     */
+    public static String templateTag(String templateName) {
+        return "template:" + templateName;
+    }
+    
+    /**
+     * ディスク上の二次キャッシュを有効にする。
+     * 解析済みのコンテンツとレンダリング結果を内容のハッシュをキーに保存し、プロセスをまたいで再利用する。
+     * 開けない場合は警告を出し、メモリ上のキャッシュだけで動作する。
+     */
+    public synchronized void enablePersistence(Path directory) {
+        DiskCache current = diskCache;
+        if (current != null && current.directory().equals(directory)) {
+            return;
+        }
+        closePersistence();
+        try {
+            diskCache = DiskCache.open(directory);
+            logger.debug("ディスクキャッシュを開きました: {} ({}件)", directory, diskCache.getStatistics().entries());
+        } catch (IOException e) {
+            logger.warn("ディスクキャッシュを開けません: {}", directory, e);
+        }
+    }
+    
+    /**
+     * ディスクキャッシュへの追加分を書き戻す
+     */
+    public void flushPersistence() {
+        DiskCache current = diskCache;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.flush();
+        } catch (IOException e) {
+            logger.warn("ディスクキャッシュを書き戻せません: {}", current.directory(), e);
+        }
+    }
+    
+    public synchronized void closePersistence() {
+        DiskCache current = diskCache;
+        if (current == null) {
+            return;
+        }
+        diskCache = null;
+        try {
+            current.close();
+        } catch (IOException e) {
+            logger.warn("ディスクキャッシュを閉じられません: {}", current.directory(), e);
+        }
+    }
+    
+    public Optional<DiskCache.Statistics> getPersistenceStatistics() {
+        DiskCache current = diskCache;
+        return current != null ? Optional.of(current.getStatistics()) : Optional.empty();
+    }
+    
+    private void persist(String key, Supplier<byte[]> encoder) {
+        DiskCache current = diskCache;
+        if (current == null || key == null) {
+            return;
+        }
+        try {
+            current.put(key, encoder.get());
+        } catch (IllegalArgumentException e) {
+            logger.debug("ディスクキャッシュに保存できないため省略します: {} ({})", key, e.getMessage());
+        }
+    }
+    
+    private <T> Optional<T> readPersisted(String key, Function<byte[], T> decoder) {
+        DiskCache current = diskCache;
+        if (current == null || key == null) {
+            return Optional.empty();
+        }
+        return current.get(key).flatMap(bytes -> {
+            try {
+                return Optional.of(decoder.apply(bytes));
+            } catch (RuntimeException e) {
+                logger.warn("ディスクキャッシュのエントリを復元できません: {}", key, e);
+                return Optional.empty();
+            }
+        });
+    }
+    
+    private static String contentKey(String kind, String filename, String contentHash) {
+        return contentHash != null ? kind + ":" + filename + ":" + contentHash : null;
     }
     
     public boolean isContentStale(String key, LocalDateTime currentTime) {
@@ -118,50 +306,160 @@ public class CacheManager {
             templateCache.size(),
             renderStats.totalEntries(),
             renderStats.hitCount(),
-            renderStats.missCount()
+            renderStats.missCount(),
+            renderStats.evictionCount(),
+            renderStats.weightBytes(),
+            renderStats.maxWeightBytes()
         );
     }
     
-    public void warmUp(Path contentDir, Path templatesDir) {
+    public WarmUpResult warmUp(Path contentDir, Path templatesDir) {
+        return warmUp(contentDir, templatesDir, new MarkdownParser(), Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * テンプレートとコンテンツを並列に読み込み、キャッシュに載せておく。
+     * テンプレートはコンパイルしてパーシャルへの依存とともに登録し、コンテンツはディスクキャッシュに
+     * 同じ内容の解析結果があればそれを、無ければ解析した結果を登録する。
+     * 投稿は {@code contentDir/posts} 以下、それ以外の {@code .md} はページとして扱う（ビルドと同じ規則）。
+     *
+     * @param parallelism 同時に処理するファイル数の上限
+     */
+    public WarmUpResult warmUp(Path contentDir, Path templatesDir, MarkdownParser parser, int parallelism) {
         logger.info("キャッシュのウォームアップを開始します");
+        long startTime = System.currentTimeMillis();
         
-        try {
-            if (Files.exists(contentDir)) {
-                try (Stream<Path> paths = Files.walk(contentDir)) {
-                    long contentCount = paths
-                        .filter(Files::isRegularFile)
-                        .filter(path -> path.toString().endsWith(".md"))
-                        .count();
-                    logger.debug("{}個のコンテンツファイルを発見しました", contentCount);
-                }
+        List<Path> templateFiles = listFiles(templatesDir, ".html");
+        List<Path> contentFiles = listFiles(contentDir, ".md");
+        Path postsDir = contentDir.resolve("posts");
+        
+        AtomicInteger templates = new AtomicInteger();
+        AtomicInteger pages = new AtomicInteger();
+        AtomicInteger posts = new AtomicInteger();
+        AtomicInteger fromDisk = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : templateFiles) {
+                executor.submit(() -> warmUpFile(permits, failures, file, () -> {
+                    String name = templatesDir.relativize(file).toString();
+                    name = name.substring(0, name.lastIndexOf('.'));
+                    cacheTemplate(name, new Template(name, Files.readString(file)));
+                    for (String partial : getCompiledTemplate(name).map(CompiledTemplate::partials).orElse(List.of())) {
+                        addTemplateDependency(name, partial);
+                    }
+                    templates.incrementAndGet();
+                }));
             }
             
-            if (Files.exists(templatesDir)) {
-                try (Stream<Path> paths = Files.walk(templatesDir)) {
-                    long templateCount = paths
-                        .filter(Files::isRegularFile)
-                        .filter(path -> path.toString().endsWith(".html"))
-                        .count();
-                    logger.debug("{}個のテンプレートファイルを発見しました", templateCount);
+            for (Path file : contentFiles) {
+                boolean post = file.startsWith(postsDir);
+                if (!post && file.getParent().endsWith("posts")) {
+                    continue;
                 }
+                executor.submit(() -> warmUpFile(permits, failures, file, () -> {
+                    // サイズの制限を確かめてから1回だけ読み込み、同じ内容からハッシュを求めて解析にも使う
+                    MarkdownParser.MarkdownSource source = parser.read(MarkdownFile.stat(file));
+                    String filename = file.getFileName().toString();
+                    String hash = source.contentHash();
+                    LocalDateTime lastModified = LocalDateTime.ofInstant(
+                        source.file().lastModified().toInstant(), ZoneId.systemDefault());
+                    if (post) {
+                        Optional<Post> persisted = getPersistedPost(filename, hash, lastModified);
+                        if (persisted.isPresent()) {
+                            fromDisk.incrementAndGet();
+                        } else {
+                            Post parsed = parser.parsePost(source);
+                            // 下書きは出力されないことが多いため、描画を伴うディスクへの保存を行わない
+                            cachePost(parsed.slug(), parsed, parsed.isPublished() ? hash : null);
+                        }
+                        posts.incrementAndGet();
+                    } else {
+                        Optional<Page> persisted = getPersistedPage(filename, hash, lastModified);
+                        if (persisted.isPresent()) {
+                            fromDisk.incrementAndGet();
+                        } else {
+                            Page parsed = parser.parsePage(source);
+                            cachePage(parsed.slug(), parsed, hash);
+                        }
+                        pages.incrementAndGet();
+                    }
+                }));
             }
-            
-            logger.info("キャッシュのウォームアップが完了しました");
+        }
+        
+        WarmUpResult result = new WarmUpResult(templates.get(), pages.get(), posts.get(), fromDisk.get(),
+                                               failures.get(), System.currentTimeMillis() - startTime);
+        logger.info("キャッシュのウォームアップが完了しました: テンプレート{}件, ページ{}件, 投稿{}件 (ディスクから{}件, 失敗{}件), {}ms",
+                   result.templates(), result.pages(), result.posts(), result.fromDisk(), result.failures(),
+                   result.durationMs());
+        return result;
+    }
+    
+    private void warmUpFile(Semaphore permits, AtomicInteger failures, Path file, WarmUpTask task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            task.run();
         } catch (Exception e) {
-            logger.warn("キャッシュのウォームアップ中にエラーが発生しました", e);
+            failures.incrementAndGet();
+            logger.warn("ウォームアップ中にファイルを読み込めませんでした: {} ({})", file, e.getMessage());
+        } finally {
+            permits.release();
+        }
+    }
+    
+    private static List<Path> listFiles(Path dir, String extension) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths
+                .filter(Files::isRegularFile)
+                .filter(path -> path.toString().endsWith(extension))
+                .toList();
+        } catch (IOException e) {
+            logger.warn("ウォームアップ対象のファイルを列挙できません: {}", dir, e);
+            return List.of();
         }
     }
     
+    @FunctionalInterface
+    private interface WarmUpTask {
+        void run() throws Exception;
+    }
+    
     public record GlobalCacheStatistics(
         int contentCacheSize,
         int templateCacheSize,
         int renderCacheSize,
         long renderHits,
-        long renderMisses
+        long renderMisses,
+        long renderEvictions,
+        long renderWeightBytes,
+        long renderMaxWeightBytes
     ) {
         public double getRenderHitRatio() {
             long total = renderHits + renderMisses;
             return total > 0 ? (double) renderHits / total : 0.0;
         }
     }
+    
+    public record WarmUpResult(
+        int templates,
+        int pages,
+        int posts,
+        int fromDisk,
+        int failures,
+        long durationMs
+    ) {
+        public int totalEntries() {
+            return templates + pages + posts;
+        }
+    }
 }
\ No newline at end of file
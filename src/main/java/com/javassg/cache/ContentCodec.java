@@ -0,0 +1,241 @@
+package com.javassg.cache;
+
+import com.javassg.model.Page;
+import com.javassg.model.Post;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ディスクキャッシュに保存する値のバイナリ形式
+ *
+ * 文字列は長さ付きのUTF-8で、フロントマターの値は型を表す1バイトに続けて書く。
+ * 最終更新日時はファイルから読み直すため保存しない。
+ */
+final class ContentCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte DATE = 6;
+    private static final byte LIST = 7;
+    private static final byte MAP = 8;
+
+    private ContentCodec() {
+    }
+
+    /**
+     * @throws IllegalArgumentException フロントマターに保存できない型の値が含まれる場合
+     */
+    static byte[] encodePage(Page page) {
+        return encode(out -> writePage(out, page.filename(), page.slug(), page.frontMatter(),
+                                       page.rawContent(), page.renderedContent()));
+    }
+
+    static Page decodePage(byte[] bytes, LocalDateTime lastModified) {
+        return decode(bytes, in -> new Page(readString(in), readString(in), readMap(in),
+                                            readString(in), readString(in), lastModified));
+    }
+
+    /**
+     * @throws IllegalArgumentException フロントマターに保存できない型の値が含まれる場合
+     */
+    static byte[] encodePost(Post post) {
+        return encode(out -> {
+            writePage(out, post.filename(), post.slug(), post.frontMatter(), post.rawContent(), post.renderedContent());
+            writeString(out, post.publishedAt().toString());
+            writeStrings(out, post.categories());
+            writeStrings(out, post.tags());
+        });
+    }
+
+    static Post decodePost(byte[] bytes, LocalDateTime lastModified) {
+        return decode(bytes, in -> new Post(readString(in), readString(in), readMap(in), readString(in),
+                                            readString(in), lastModified, LocalDateTime.parse(readString(in)),
+                                            readStrings(in), readStrings(in)));
+    }
+
+    static byte[] encodeRendered(String content, Set<String> tags) {
+        return encode(out -> {
+            writeStrings(out, tags);
+            writeString(out, content);
+        });
+    }
+
+    static Rendered decodeRendered(byte[] bytes) {
+        return decode(bytes, in -> {
+            Set<String> tags = new LinkedHashSet<>(readStrings(in));
+            return new Rendered(readString(in), tags);
+        });
+    }
+
+    private static void writePage(DataOutputStream out, String filename, String slug, Map<String, Object> frontMatter,
+                                  String rawContent, String renderedContent) throws IOException {
+        writeString(out, filename);
+        writeString(out, slug);
+        writeValue(out, frontMatter);
+        writeString(out, rawContent);
+        writeString(out, renderedContent);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case null -> out.writeByte(NULL);
+            case String string -> {
+                out.writeByte(STRING);
+                writeString(out, string);
+            }
+            case Boolean bool -> {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean(bool);
+            }
+            case Integer number -> {
+                out.writeByte(INTEGER);
+                out.writeInt(number);
+            }
+            case Long number -> {
+                out.writeByte(LONG);
+                out.writeLong(number);
+            }
+            case Double number -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(number);
+            }
+            case Date date -> {
+                out.writeByte(DATE);
+                out.writeLong(date.getTime());
+            }
+            case List<?> list -> {
+                out.writeByte(LIST);
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    writeValue(out, element);
+                }
+            }
+            case Map<?, ?> map -> {
+                out.writeByte(MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(out, String.valueOf(entry.getKey()));
+                    writeValue(out, entry.getValue());
+                }
+            }
+            default -> throw new IllegalArgumentException("キャッシュに保存できない値です: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case BOOLEAN -> in.readBoolean();
+            case INTEGER -> in.readInt();
+            case LONG -> in.readLong();
+            case DOUBLE -> in.readDouble();
+            case DATE -> new Date(in.readLong());
+            case LIST -> {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                yield list;
+            }
+            case MAP -> readEntries(in, in.readInt());
+            default -> throw new IOException("不明な値の種類です: " + type);
+        };
+    }
+
+    private static Map<String, Object> readMap(DataInputStream in) throws IOException {
+        if (in.readByte() != MAP) {
+            throw new IOException("フロントマターの形式が正しくありません");
+        }
+        return readEntries(in, in.readInt());
+    }
+
+    private static Map<String, Object> readEntries(DataInputStream in, int size) throws IOException {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(readString(in), readValue(in));
+        }
+        return map;
+    }
+
+    private static void writeStrings(DataOutputStream out, Iterable<String> values) throws IOException {
+        List<String> list = new ArrayList<>();
+        values.forEach(list::add);
+        out.writeInt(list.size());
+        for (String value : list) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return List.copyOf(values);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T decode(byte[] bytes, Reader<T> reader) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    // Record classes for return types
+    record Rendered(String content, Set<String> tags) {}
+}
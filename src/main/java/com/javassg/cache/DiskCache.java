@@ -0,0 +1,331 @@
+package com.javassg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * ディスク上の二次キャッシュ
+ *
+ * 値はデータファイルに追記し、キーと格納位置の対応はインデックスファイルに保存する。
+ * インデックスは開くときにメモリマップして読み込み、{@link #flush()} で一時ファイルに書いてから置き換える。
+ * キーには内容のハッシュを含めるため古い値を返すことはなく、個別の無効化は行わない。
+ * 一定回数のビルドで参照されなかったエントリは書き戻し時に取り除き、
+ * 不要な領域がデータファイルの半分を超えたらデータファイルを詰め直す。
+ */
+public final class DiskCache implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+
+    static final String INDEX_FILE = "index.bin";
+    static final String DATA_FILE = "data.bin";
+
+    private static final int MAGIC = 0x4A534C32; // "JSL2"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int SLOT_BYTES = Long.BYTES + 3 * Integer.BYTES;
+    private static final int MAX_KEY_BYTES = 0xFFFF;
+    private static final int MAX_IDLE_GENERATIONS = 8;
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path directory;
+    private final Map<String, Slot> index;
+    private final int generation;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object appendLock = new Object();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private FileChannel data;
+    private long dataSize;
+    private volatile boolean dirty;
+
+    private DiskCache(Path directory, FileChannel data, Map<String, Slot> index, int generation) throws IOException {
+        this.directory = directory;
+        this.data = data;
+        this.dataSize = data.size();
+        this.index = new ConcurrentHashMap<>(index);
+        this.generation = generation;
+    }
+
+    /**
+     * ディレクトリのキャッシュを開く。インデックスが無い・読めない場合は空のキャッシュとして開く。
+     */
+    public static DiskCache open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path indexFile = directory.resolve(INDEX_FILE);
+        FileChannel data = FileChannel.open(directory.resolve(DATA_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            Map<String, Slot> slots = new HashMap<>();
+            int generation = 0;
+            boolean loaded = false;
+            if (Files.exists(indexFile)) {
+                try {
+                    generation = readIndex(indexFile, data.size(), slots) + 1;
+                    loaded = true;
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("ディスクキャッシュのインデックスを読み込めないため、空の状態から始めます: {} ({})",
+                               indexFile, e.getMessage());
+                    slots.clear();
+                    generation = 0;
+                }
+            }
+            if (!loaded) {
+                // インデックスから参照されないデータは使えないため捨てる
+                data.truncate(0);
+            }
+            return new DiskCache(directory, data, slots, generation);
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public Optional<byte[]> get(String key) {
+        lock.readLock().lock();
+        try {
+            Slot slot = index.get(key);
+            if (slot == null) {
+                missCount.incrementAndGet();
+                return Optional.empty();
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(slot.length());
+            while (buffer.hasRemaining()) {
+                if (data.read(buffer, slot.offset() + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            byte[] value = buffer.array();
+            if (buffer.hasRemaining() || checksum(value) != slot.checksum()) {
+                logger.warn("ディスクキャッシュのエントリが破損しているため破棄します: {}", key);
+                index.remove(key, slot);
+                dirty = true;
+                missCount.incrementAndGet();
+                return Optional.empty();
+            }
+
+            touch(key, slot);
+            hitCount.incrementAndGet();
+            return Optional.of(value);
+        } catch (IOException e) {
+            logger.warn("ディスクキャッシュを読み込めません: {}", key, e);
+            missCount.incrementAndGet();
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String key, byte[] value) {
+        if (key.getBytes(StandardCharsets.UTF_8).length > MAX_KEY_BYTES) {
+            return;
+        }
+
+        int checksum = checksum(value);
+        lock.readLock().lock();
+        try {
+            Slot existing = index.get(key);
+            if (existing != null && existing.length() == value.length && existing.checksum() == checksum) {
+                // 同じ値は書き直さない
+                touch(key, existing);
+                return;
+            }
+
+            long offset;
+            synchronized (appendLock) {
+                offset = dataSize;
+                ByteBuffer buffer = ByteBuffer.wrap(value);
+                while (buffer.hasRemaining()) {
+                    data.write(buffer, offset + buffer.position());
+                }
+                dataSize += value.length;
+            }
+            index.put(key, new Slot(offset, value.length, checksum, generation));
+            dirty = true;
+        } catch (IOException e) {
+            logger.warn("ディスクキャッシュに書き込めません: {}", key, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 追記したデータとインデックスをディスクに書き戻す
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+
+            index.values().removeIf(slot -> generation - slot.lastUsed() > MAX_IDLE_GENERATIONS);
+
+            long liveBytes = 0;
+            for (Slot slot : index.values()) {
+                liveBytes += slot.length();
+            }
+            if (dataSize - liveBytes > Math.max(liveBytes, MIN_COMPACTION_BYTES)) {
+                compact();
+            }
+
+            data.force(false);
+            writeIndex();
+            dirty = false;
+            logger.debug("ディスクキャッシュを書き戻しました: {}件, {}バイト", index.size(), dataSize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            flush();
+        } finally {
+            data.close();
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(index.size(), dataSize, hitCount.get(), missCount.get());
+    }
+
+    private void touch(String key, Slot slot) {
+        if (slot.lastUsed() != generation) {
+            index.replace(key, slot, slot.usedIn(generation));
+            dirty = true;
+        }
+    }
+
+    /**
+     * 参照されているエントリだけを新しいデータファイルに詰めて書き直す
+     */
+    private void compact() throws IOException {
+        Path dataFile = directory.resolve(DATA_FILE);
+        Path compacted = directory.resolve(DATA_FILE + ".tmp");
+
+        long position = 0;
+        try (FileChannel out = FileChannel.open(compacted,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, Slot> entry : index.entrySet()) {
+                Slot slot = entry.getValue();
+                long transferred = 0;
+                while (transferred < slot.length()) {
+                    long count = data.transferTo(slot.offset() + transferred, slot.length() - transferred, out);
+                    if (count <= 0) {
+                        throw new IOException("ディスクキャッシュのデータが途中で終わっています: " + entry.getKey());
+                    }
+                    transferred += count;
+                }
+                entry.setValue(slot.movedTo(position));
+                position += slot.length();
+            }
+            out.force(true);
+        }
+
+        long before = dataSize;
+        data.close();
+        Files.move(compacted, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        data = FileChannel.open(dataFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataSize = position;
+        logger.debug("ディスクキャッシュのデータファイルを詰め直しました: {} -> {}バイト", before, position);
+    }
+
+    private static int readIndex(Path indexFile, long dataSize, Map<String, Slot> slots) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("インデックスの形式が異なります");
+            }
+            int generation = buffer.getInt();
+            int count = buffer.getInt();
+
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[Short.toUnsignedInt(buffer.getShort())];
+                buffer.get(key);
+                Slot slot = new Slot(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+                // 書き戻し前に中断されたなどで、データファイルに存在しない範囲は無視する
+                if (slot.offset() >= 0 && slot.length() >= 0 && slot.offset() + slot.length() <= dataSize) {
+                    slots.put(new String(key, StandardCharsets.UTF_8), slot);
+                }
+            }
+            return generation;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        Map<byte[], Slot> encoded = new HashMap<>();
+        int size = HEADER_BYTES;
+        for (Map.Entry<String, Slot> entry : index.entrySet()) {
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            encoded.put(key, entry.getValue());
+            size += Short.BYTES + key.length + SLOT_BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(generation).putInt(encoded.size());
+        for (Map.Entry<byte[], Slot> entry : encoded.entrySet()) {
+            Slot slot = entry.getValue();
+            buffer.putShort((short) entry.getKey().length).put(entry.getKey());
+            buffer.putLong(slot.offset()).putInt(slot.length()).putInt(slot.checksum()).putInt(slot.lastUsed());
+        }
+        buffer.flip();
+
+        Path indexFile = directory.resolve(INDEX_FILE);
+        Path temporary = directory.resolve(INDEX_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int checksum(byte[] value) {
+        CRC32C crc = new CRC32C();
+        crc.update(value);
+        return (int) crc.getValue();
+    }
+
+    // Record classes for return types
+    private record Slot(long offset, int length, int checksum, int lastUsed) {
+        Slot usedIn(int generation) {
+            return new Slot(offset, length, checksum, generation);
+        }
+
+        Slot movedTo(long position) {
+            return new Slot(position, length, checksum, lastUsed);
+        }
+    }
+
+    public record Statistics(int entries, long dataBytes, long hitCount, long missCount) {}
+}
@@ -1,127 +1,397 @@
 package com.javassg.cache;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 
+/**
+ * レンダリング結果のキャッシュ
+ *
+ * 容量はエントリ数ではなく保持する文字列のおおよそのバイト数で制限する。
+ * 追い出しはW-TinyLFU方式で、新しいエントリはまず小さなウィンドウ（LRU）に入り、
+ * ウィンドウからあふれたものはメイン領域の最も古いエントリとアクセス頻度を比べて勝った方だけが残る。
+ * メイン領域は一度しか参照されていないprobationと、再度参照されたprotectedの2段のLRUからなる。
+ * どの操作も追い出しを含めて定数時間で行う。
+ *
+ * 各エントリには依存するコンテンツ・テンプレート・コレクションを表すタグを付けられ、
+ * タグからエントリへの索引によって影響を受けるエントリだけを無効化できる。
+ */
 public class RenderCache {
-    
-    private final ConcurrentMap<String, CacheEntry> renderCache;
-    private final AtomicLong hitCount = new AtomicLong(0);
-    private final AtomicLong missCount = new AtomicLong(0);
-    private final int maxSize;
-    
+
+    public static final long DEFAULT_MAX_WEIGHT_BYTES = 64L * 1024 * 1024;
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int ESTIMATED_ENTRY_BYTES = 16 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Node> entries = new HashMap<>();
+    private final Map<String, Set<Node>> nodesByTag = new HashMap<>();
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>();
+    private final FrequencySketch sketch;
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
     public RenderCache() {
-        this(1000);
+        this(DEFAULT_MAX_WEIGHT_BYTES);
     }
-    
-    public RenderCache(int maxSize) {
-        this.maxSize = maxSize;
-        this.renderCache = new ConcurrentHashMap<>();
+
+    public RenderCache(long maxWeightBytes) {
+        if (maxWeightBytes < 1) {
+            throw new IllegalArgumentException("キャッシュの容量は1バイト以上である必要があります");
+        }
+        this.maxWeight = maxWeightBytes;
+        this.windowMaxWeight = Math.max(1, (long) (maxWeightBytes * WINDOW_RATIO));
+        this.protectedMaxWeight = (long) ((maxWeightBytes - windowMaxWeight) * PROTECTED_RATIO);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64, maxWeightBytes / ESTIMATED_ENTRY_BYTES)));
     }
-    
+
+    /**
+     * タグを指定せずに登録する。タグはキーから{@link #implicitTags(String)}で求める。
+     */
     public void putRendered(String key, String content, LocalDateTime timestamp) {
-        evictIfNecessary();
-        renderCache.put(key, new CacheEntry(content, timestamp));
+        putRendered(key, content, timestamp, implicitTags(key));
+    }
+
+    public void putRendered(String key, String content, LocalDateTime timestamp, Set<String> tags) {
+        long weight = weigh(key, content);
+
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Node existing = entries.get(key);
+            if (existing != null) {
+                discard(existing);
+            }
+            if (weight > maxWeight) {
+                // 容量を超える結果は保持しない
+                return;
+            }
+
+            Node node = new Node(key, new CacheEntry(content, timestamp), weight, Set.copyOf(tags));
+            entries.put(key, node);
+            for (String tag : node.tags) {
+                nodesByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(node);
+            }
+            link(node, Segment.WINDOW);
+            evict();
+        } finally {
+            lock.unlock();
+        }
     }
-    
+
     public Optional<String> getRendered(String key) {
-        CacheEntry entry = renderCache.get(key);
-        if (entry != null) {
-            hitCount.incrementAndGet();
-            return Optional.of(entry.content());
-        } else {
-            missCount.incrementAndGet();
-            return Optional.empty();
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Node node = entries.get(key);
+            if (node == null) {
+                missCount++;
+                return Optional.empty();
+            }
+            hitCount++;
+            onAccess(node);
+            return Optional.of(node.entry.content());
+        } finally {
+            lock.unlock();
         }
     }
-    
+
     public boolean isValid(String key, LocalDateTime lastModified) {
-        CacheEntry entry = renderCache.get(key);
-        return entry != null && !entry.timestamp().isBefore(lastModified);
+        lock.lock();
+        try {
+            Node node = entries.get(key);
+            return node != null && !node.entry.timestamp().isBefore(lastModified);
+        } finally {
+            lock.unlock();
+        }
     }
-    
-    public String generateKey(String template, String content, Map<String, Object> context) {
+
+    /**
+     * 出力キー・内容のフィンガープリント・テンプレートのバージョン・サイト設定のバージョンからキーを作る。
+     * いずれかが変われば別のキーになるため、内容が変わった出力に古い結果が使われることはない。
+     */
+    public static String generateKey(String outputKey, String contentFingerprint, String templateVersion,
+                                     String configVersion) {
+        return outputKey + "@" + contentFingerprint + ":" + templateVersion + ":" + configVersion;
+    }
+
+    /**
+     * タグが付いたエントリを無効化する。索引を引くため、処理量は該当するエントリ数にのみ比例する。
+     *
+     * @return 無効化したエントリ数
+     */
+    public int invalidateTag(String tag) {
+        lock.lock();
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            
-            digest.update(template.getBytes(StandardCharsets.UTF_8));
-            digest.update(content.getBytes(StandardCharsets.UTF_8));
-            
-            TreeMap<String, Object> sortedContext = new TreeMap<>(context);
-            for (Map.Entry<String, Object> entry : sortedContext.entrySet()) {
-                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
-                digest.update(entry.getValue().toString().getBytes(StandardCharsets.UTF_8));
-            }
-            
-            byte[] hash = digest.digest();
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+            Set<Node> tagged = nodesByTag.remove(tag);
+            if (tagged == null) {
+                return 0;
+            }
+            for (Node node : List.copyOf(tagged)) {
+                discard(node);
             }
-            
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256アルゴリズムが利用できません", e);
+            return tagged.size();
+        } finally {
+            lock.unlock();
         }
     }
-    
+
+    /**
+     * キーがパターン（{@code *} は任意の文字列）に一致するエントリを無効化する。
+     * 全てのキーを走査するため、依存関係による無効化には{@link #invalidateTag(String)}を使うこと。
+     */
     public void invalidateByPattern(String pattern) {
-        String regex = pattern.replace("*", ".*");
-        renderCache.entrySet().removeIf(entry -> entry.getKey().matches(regex));
+        Pattern regex = Pattern.compile(pattern.replace("*", ".*"));
+        lock.lock();
+        try {
+            for (Node node : List.copyOf(entries.values())) {
+                if (regex.matcher(node.key).matches()) {
+                    discard(node);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
     }
-    
+
     public void remove(String key) {
-        renderCache.remove(key);
+        lock.lock();
+        try {
+            Node node = entries.get(key);
+            if (node != null) {
+                discard(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * タグを指定せずに登録されたエントリのタグ。
+     * {@code page:about} のような {@code 種類:名前} 形式のキーは、種類と同名のテンプレートと
+     * 名前のコンテンツに依存するものとみなす。
+     */
+    static Set<String> implicitTags(String key) {
+        int separator = key.indexOf(':');
+        if (separator < 0) {
+            return Set.of(CacheManager.contentTag(key));
+        }
+        return Set.of(
+            CacheManager.templateTag(key.substring(0, separator)),
+            CacheManager.contentTag(key.substring(separator + 1))
+        );
     }
-    
+
     public void clear() {
-        renderCache.clear();
-        hitCount.set(0);
-        missCount.set(0);
+        lock.lock();
+        try {
+            entries.clear();
+            nodesByTag.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            windowWeight = 0;
+            probationWeight = 0;
+            protectedWeight = 0;
+            hitCount = 0;
+            missCount = 0;
+            evictionCount = 0;
+        } finally {
+            lock.unlock();
+        }
     }
-    
+
     public CacheStatistics getStatistics() {
-        return new CacheStatistics(
-            renderCache.size(),
-            hitCount.get(),
-            missCount.get()
-        );
+        lock.lock();
+        try {
+            return new CacheStatistics(
+                entries.size(),
+                hitCount,
+                missCount,
+                evictionCount,
+                windowWeight + probationWeight + protectedWeight,
+                maxWeight
+            );
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onAccess(Node node) {
+        switch (node.segment) {
+            case WINDOW -> window.putLast(node.key, node);
+            case PROTECTED -> protectedSegment.putLast(node.key, node);
+            case PROBATION -> {
+                // 2回目以降の参照でprotectedへ昇格し、あふれた分はprobationへ戻す
+                unlink(node);
+                link(node, Segment.PROTECTED);
+                while (protectedWeight > protectedMaxWeight && protectedSegment.size() > 1) {
+                    Node demoted = protectedSegment.firstEntry().getValue();
+                    unlink(demoted);
+                    link(demoted, Segment.PROBATION);
+                }
+            }
+        }
+    }
+
+    /**
+     * ウィンドウからあふれたエントリをメイン領域へ移し、全体の容量を超えた分を追い出す
+     */
+    private void evict() {
+        while (windowWeight > windowMaxWeight && !window.isEmpty()) {
+            Node candidate = window.firstEntry().getValue();
+            unlink(candidate);
+            admit(candidate);
+        }
+
+        while (windowWeight + probationWeight + protectedWeight > maxWeight) {
+            Node victim = firstOf(probation, protectedSegment, window);
+            if (victim == null) {
+                break;
+            }
+            evictNode(victim);
+        }
+    }
+
+    /**
+     * メイン領域に空きが無い場合は、候補と最も古いエントリのうちアクセス頻度の低い方を追い出す
+     */
+    private void admit(Node candidate) {
+        long mainMaxWeight = maxWeight - windowMaxWeight;
+        while (probationWeight + protectedWeight + candidate.weight > mainMaxWeight) {
+            Node victim = firstOf(probation, protectedSegment);
+            if (victim == null) {
+                break;
+            }
+            if (sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+                entries.remove(candidate.key);
+                unindex(candidate);
+                evictionCount++;
+                return;
+            }
+            evictNode(victim);
+        }
+        link(candidate, Segment.PROBATION);
+    }
+
+    @SafeVarargs
+    private static Node firstOf(LinkedHashMap<String, Node>... segments) {
+        for (LinkedHashMap<String, Node> segment : segments) {
+            if (!segment.isEmpty()) {
+                return segment.firstEntry().getValue();
+            }
+        }
+        return null;
+    }
+
+    private void evictNode(Node node) {
+        discard(node);
+        evictionCount++;
+    }
+
+    private void discard(Node node) {
+        entries.remove(node.key);
+        unlink(node);
+        unindex(node);
+    }
+
+    private void unindex(Node node) {
+        for (String tag : node.tags) {
+            Set<Node> tagged = nodesByTag.get(tag);
+            if (tagged != null && tagged.remove(node) && tagged.isEmpty()) {
+                nodesByTag.remove(tag);
+            }
+        }
+    }
+
+    private void link(Node node, Segment segment) {
+        node.segment = segment;
+        switch (segment) {
+            case WINDOW -> {
+                window.putLast(node.key, node);
+                windowWeight += node.weight;
+            }
+            case PROBATION -> {
+                probation.putLast(node.key, node);
+                probationWeight += node.weight;
+            }
+            case PROTECTED -> {
+                protectedSegment.putLast(node.key, node);
+                protectedWeight += node.weight;
+            }
+        }
     }
-    
-    private void evictIfNecessary() {
-        if (renderCache.size() >= maxSize) {
-            String oldestKey = renderCache.entrySet()
-                .stream()
-                .min(Map.Entry.comparingByValue((e1, e2) -> e1.timestamp().compareTo(e2.timestamp())))
-                .map(Map.Entry::getKey)
-                .orElse(null);
-            
-            if (oldestKey != null) {
-                renderCache.remove(oldestKey);
+
+    private void unlink(Node node) {
+        switch (node.segment) {
+            case WINDOW -> {
+                window.remove(node.key);
+                windowWeight -= node.weight;
             }
+            case PROBATION -> {
+                probation.remove(node.key);
+                probationWeight -= node.weight;
+            }
+            case PROTECTED -> {
+                protectedSegment.remove(node.key);
+                protectedWeight -= node.weight;
+            }
+        }
+    }
+
+    /**
+     * 保持に必要なおおよそのバイト数（1文字2バイトとエントリごとの固定分）
+     */
+    private static long weigh(String key, String content) {
+        return 2L * (key.length() + content.length()) + ENTRY_OVERHEAD_BYTES;
+    }
+
+    private enum Segment {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static final class Node {
+        private final String key;
+        private final CacheEntry entry;
+        private final long weight;
+        private final Set<String> tags;
+        private Segment segment;
+
+        private Node(String key, CacheEntry entry, long weight, Set<String> tags) {
+            this.key = key;
+            this.entry = entry;
+            this.weight = weight;
+            this.tags = tags;
         }
     }
-    
+
     public record CacheEntry(String content, LocalDateTime timestamp) {}
-    
+
     public record CacheStatistics(
         int totalEntries,
         long hitCount,
-        long missCount
+        long missCount,
+        long evictionCount,
+        long weightBytes,
+        long maxWeightBytes
     ) {
         public double getHitRatio() {
             long total = hitCount + missCount;
             return total > 0 ? (double) hitCount / total : 0.0;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,36 @@
 package com.javassg.cache;
 
 import com.javassg.model.Template;
+import com.javassg.template.CompiledTemplate;
 
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+/**
+ * テンプレートキャッシュ
+ *
+ * テンプレートは登録時に一度だけコンパイルし、コンパイル済みの形で保持する。
+ */
 public class TemplateCache {
     
-    private final ConcurrentMap<String, CacheEntry<Template>> templateCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CacheEntry<CompiledTemplate>> templateCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Set<String>> dependencies = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, LocalDateTime> invalidationTimes = new ConcurrentHashMap<>();
     
     public void putTemplate(String name, Template template) {
-        templateCache.put(name, new CacheEntry<>(template, LocalDateTime.now()));
+        templateCache.put(name, new CacheEntry<>(template.compile(), LocalDateTime.now()));
         invalidationTimes.remove(name);
     }
     
     public Optional<Template> getTemplate(String name) {
-        CacheEntry<Template> entry = templateCache.get(name);
+        return getCompiledTemplate(name)
+            .map(compiled -> new Template(compiled.name(), compiled.source()));
+    }
+    
+    public Optional<CompiledTemplate> getCompiledTemplate(String name) {
+        CacheEntry<CompiledTemplate> entry = templateCache.get(name);
         if (entry != null && !isInvalidated(name)) {
             return Optional.of(entry.content());
         }
@@ -27,7 +38,7 @@ public class TemplateCache {
     }
     
     public boolean isValid(String name, LocalDateTime lastModified) {
-        CacheEntry<Template> entry = templateCache.get(name);
+        CacheEntry<CompiledTemplate> entry = templateCache.get(name);
         if (entry == null) {
             return false;
         }
@@ -47,16 +58,32 @@ public class TemplateCache {
         return dependencies.getOrDefault(template, Collections.emptySet());
     }
     
-    public void invalidateDependents(String templateName) {
+    /**
+     * テンプレートと、パーシャルとして直接・間接に参照しているテンプレートを無効化する
+     *
+     * @return 無効化したテンプレート名（指定したテンプレート自身を含む）
+     */
+    public Set<String> invalidateDependents(String templateName) {
         LocalDateTime now = LocalDateTime.now();
+        Set<String> invalidated = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(templateName);
         
-        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
-            if (entry.getValue().contains(templateName)) {
-                invalidationTimes.put(entry.getKey(), now);
+        while (!queue.isEmpty()) {
+            String current = queue.poll();
+            if (!invalidated.add(current)) {
+                continue;
+            }
+            invalidationTimes.put(current, now);
+            
+            for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+                if (entry.getValue().contains(current)) {
+                    queue.add(entry.getKey());
+                }
             }
         }
         
-        invalidationTimes.put(templateName, now);
+        return invalidated;
     }
     
     private boolean isInvalidated(String name) {
@@ -149,7 +149,7 @@ public class BuildCommand {
             return buildEngine.buildForProduction();
         } else if (options.incremental) {
             System.out.println("増分ビルドを実行しています...");
-            return buildEngine.buildIncremental(LocalDateTime.now().minusHours(1));
+            return buildEngine.buildIncremental();
         } else {
             return buildEngine.build();
         }
@@ -192,6 +192,12 @@ public class BuildCommand {
         
         double sizeInMB = stats.outputSize() / (1024.0 * 1024.0);
         System.out.println(String.format("出力サイズ: %.1f MB", sizeInMB));
+        
+        if (stats.htmlStageTimings() != null) {
+            var timings = stats.htmlStageTimings();
+            System.out.println(String.format("HTML生成: レンダリング %dms / 書き込み %dms (経過 %dms)",
+                timings.renderMs(), timings.writeMs(), timings.wallMs()));
+        }
     }
     
     private void startWatchMode(BuildEngineInterface buildEngine, BuildOptions options) {
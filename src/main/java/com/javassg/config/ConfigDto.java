@@ -66,6 +66,27 @@ public class ConfigDto {
         
         @JsonProperty("templatesDirectory")
         public String templatesDirectory;
+        
+        @JsonProperty("parallelism")
+        public Integer parallelism;
+        
+        @JsonProperty("renderWorkers")
+        public Integer renderWorkers;
+        
+        @JsonProperty("cacheDirectory")
+        public String cacheDirectory;
+        
+        @JsonProperty("persistentCache")
+        public Boolean persistentCache;
+        
+        @JsonProperty("stagedOutput")
+        public Boolean stagedOutput;
+        
+        @JsonProperty("linkStaticFiles")
+        public Boolean linkStaticFiles;
+        
+        @JsonProperty("fingerprintAssets")
+        public Boolean fingerprintAssets;
     }
     
     public static class ServerDto {
@@ -111,11 +111,20 @@ public class ConfigLoader {
         );
         
         // Build設定
+        int parallelism = dto.build != null && dto.build.parallelism != null
+            ? dto.build.parallelism : BuildConfig.defaultParallelism();
         BuildConfig buildConfig = new BuildConfig(
             dto.build != null && dto.build.contentDirectory != null ? dto.build.contentDirectory : "content",
             dto.build != null && dto.build.outputDirectory != null ? dto.build.outputDirectory : "_site",
             dto.build != null && dto.build.staticDirectory != null ? dto.build.staticDirectory : "static",
-            dto.build != null && dto.build.templatesDirectory != null ? dto.build.templatesDirectory : "templates"
+            dto.build != null && dto.build.templatesDirectory != null ? dto.build.templatesDirectory : "templates",
+            parallelism,
+            dto.build != null && dto.build.renderWorkers != null ? dto.build.renderWorkers : parallelism,
+            dto.build != null && dto.build.cacheDirectory != null ? dto.build.cacheDirectory : BuildConfig.defaultCacheDirectory(),
+            dto.build != null && dto.build.persistentCache != null && dto.build.persistentCache,
+            dto.build != null && dto.build.stagedOutput != null && dto.build.stagedOutput,
+            dto.build != null && dto.build.linkStaticFiles != null && dto.build.linkStaticFiles,
+            dto.build != null && dto.build.fingerprintAssets != null && dto.build.fingerprintAssets
         );
         
         // Server設定
@@ -170,7 +179,8 @@ public class ConfigLoader {
                 extractValue(yamlContent, "contentDirectory", "content"),
                 extractValue(yamlContent, "outputDirectory", "_site"),
                 extractValue(yamlContent, "staticDirectory", "static"),
-                extractValue(yamlContent, "templatesDirectory", "templates")
+                extractValue(yamlContent, "templatesDirectory", "templates"),
+                extractIntValue(yamlContent, "parallelism", BuildConfig.defaultParallelism())
             );
 
             ServerConfig serverConfig = new ServerConfig(
@@ -4,8 +4,17 @@ public record BuildConfig(
     String contentDirectory,
     String outputDirectory,
     String staticDirectory,
-    String templatesDirectory
+    String templatesDirectory,
+    int parallelism,
+    int renderWorkers,
+    String cacheDirectory,
+    boolean persistentCache,
+    boolean stagedOutput,
+    boolean linkStaticFiles,
+    boolean fingerprintAssets
 ) {
+    private static final String DEFAULT_CACHE_DIRECTORY = ".javassg";
+    
     public BuildConfig {
         if (contentDirectory == null || contentDirectory.trim().isEmpty()) {
             throw new IllegalArgumentException("コンテンツディレクトリは空にできません");
@@ -13,5 +22,38 @@ public record BuildConfig(
         if (outputDirectory == null || outputDirectory.trim().isEmpty()) {
             throw new IllegalArgumentException("出力ディレクトリは空にできません");
         }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("並列度は1以上である必要があります");
+        }
+        if (renderWorkers < 1) {
+            throw new IllegalArgumentException("HTML生成のワーカー数は1以上である必要があります");
+        }
+        if (cacheDirectory == null || cacheDirectory.trim().isEmpty()) {
+            cacheDirectory = DEFAULT_CACHE_DIRECTORY;
+        }
+    }
+    
+    public BuildConfig(String contentDirectory, String outputDirectory, String staticDirectory, String templatesDirectory) {
+        this(contentDirectory, outputDirectory, staticDirectory, templatesDirectory, defaultParallelism());
+    }
+    
+    public BuildConfig(String contentDirectory, String outputDirectory, String staticDirectory, String templatesDirectory,
+                       int parallelism) {
+        this(contentDirectory, outputDirectory, staticDirectory, templatesDirectory, parallelism,
+             parallelism, DEFAULT_CACHE_DIRECTORY, false, false, false, false);
+    }
+    
+    /**
+     * 既定の並列度（利用可能なプロセッサ数）
+     */
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * 既定のキャッシュディレクトリ（ビルドマニフェストなどの保存先）
+     */
+    public static String defaultCacheDirectory() {
+        return DEFAULT_CACHE_DIRECTORY;
     }
-}
\ No newline at end of file
+}
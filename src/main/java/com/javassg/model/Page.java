@@ -9,7 +9,7 @@ public record Page(
     String slug,
     Map<String, Object> frontMatter,
     String rawContent,
-    String renderedContent,
+    RenderedContent rendering,
     LocalDateTime lastModified
 ) {
     private static final Pattern SLUG_PATTERN = Pattern.compile("[^a-zA-Z0-9\\-]");
@@ -21,7 +21,7 @@ public record Page(
         if (rawContent == null) {
             throw new IllegalArgumentException("コンテンツは null にできません");
         }
-        if (renderedContent == null) {
+        if (rendering == null) {
             throw new IllegalArgumentException("レンダリング済みコンテンツは null にできません");
         }
         if (lastModified == null) {
@@ -29,6 +29,19 @@ public record Page(
         }
     }
     
+    public Page(String filename, String slug, Map<String, Object> frontMatter, String rawContent,
+                String renderedContent, LocalDateTime lastModified) {
+        this(filename, slug, frontMatter, rawContent,
+             renderedContent != null ? RenderedContent.of(renderedContent) : null, lastModified);
+    }
+    
+    /**
+     * 本文のHTML（未描画の場合はここで描画する）
+     */
+    public String renderedContent() {
+        return rendering.html();
+    }
+    
     public String title() {
         var title = getFrontMatterValue("title");
         if (title instanceof String str && !str.trim().isEmpty()) {
@@ -42,6 +55,13 @@ public record Page(
         return desc instanceof String str ? str : "";
     }
     
+    /**
+     * テンプレートから {@code content} として参照される本文HTML
+     */
+    public String content() {
+        return renderedContent();
+    }
+    
     public Object getFrontMatterValue(String key) {
         return frontMatter.get(key);
     }
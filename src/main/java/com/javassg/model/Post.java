@@ -11,7 +11,7 @@ public record Post(
     String slug,
     Map<String, Object> frontMatter,
     String rawContent,
-    String renderedContent,
+    RenderedContent rendering,
     LocalDateTime lastModified,
     LocalDateTime publishedAt,
     List<String> categories,
@@ -32,6 +32,21 @@ public record Post(
         }
     }
     
+    public Post(String filename, String slug, Map<String, Object> frontMatter, String rawContent,
+                String renderedContent, LocalDateTime lastModified, LocalDateTime publishedAt,
+                List<String> categories, List<String> tags) {
+        this(filename, slug, frontMatter, rawContent,
+             renderedContent != null ? RenderedContent.of(renderedContent) : null,
+             lastModified, publishedAt, categories, tags);
+    }
+    
+    /**
+     * 本文のHTML（未描画の場合はここで描画する）
+     */
+    public String renderedContent() {
+        return rendering != null ? rendering.html() : null;
+    }
+    
     public String title() {
         var title = frontMatter.get("title");
         if (title instanceof String str && !str.trim().isEmpty()) {
@@ -45,6 +60,13 @@ public record Post(
         return desc instanceof String str ? str : "";
     }
     
+    /**
+     * テンプレートから {@code content} として参照される本文HTML
+     */
+    public String content() {
+        return renderedContent();
+    }
+    
     public boolean isPublished() {
         var draft = frontMatter.get("draft");
         if (draft instanceof Boolean bool && bool) {
@@ -95,7 +117,7 @@ public record Post(
             page.slug(),
             page.frontMatter(),
             page.rawContent(),
-            page.renderedContent(),
+            page.rendering(),
             page.lastModified(),
             publishedAt,
             categories,
@@ -0,0 +1,97 @@
+package com.javassg.model;
+
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+/**
+ * 本文のHTML
+ *
+ * 解析時には元のMarkdownと描画方法だけを保持し、最初に参照されたときに一度だけHTMLを生成する。
+ * 下書きとして除外されたり、レンダリング結果のキャッシュが使われたりして参照されない本文は描画しない。
+ * 等価性は描画せずに判定できるよう、遅延して描画するものは元のMarkdownと描画オプションで、
+ * 生成済みのHTMLから作ったものはHTMLで比べる（両者が等しくなることはない）。
+ * そのため{@link Page}や{@link Post}の比較やハッシュ表のキーとしての使用で本文が描画されることはない。
+ */
+public final class RenderedContent {
+
+    private static final RenderedContent EMPTY = new RenderedContent("");
+
+    private final String markdown;
+    private final String options;
+    private UnaryOperator<String> renderer;
+    private volatile String html;
+
+    private RenderedContent(String html) {
+        this.markdown = null;
+        this.options = null;
+        this.html = html;
+    }
+
+    private RenderedContent(String markdown, String options, UnaryOperator<String> renderer) {
+        this.markdown = markdown;
+        this.options = options;
+        this.renderer = renderer;
+    }
+
+    /**
+     * 生成済みのHTML
+     */
+    public static RenderedContent of(String html) {
+        Objects.requireNonNull(html, "html");
+        return html.isEmpty() ? EMPTY : new RenderedContent(html);
+    }
+
+    /**
+     * 最初の参照時に {@code renderer} で {@code markdown} から生成するHTML
+     *
+     * @param options 描画結果に影響する設定を表す文字列（同じMarkdownでも設定が異なれば等しくない）
+     */
+    public static RenderedContent lazy(String markdown, String options, UnaryOperator<String> renderer) {
+        return new RenderedContent(Objects.requireNonNull(markdown, "markdown"), Objects.requireNonNull(options, "options"),
+                                   Objects.requireNonNull(renderer, "renderer"));
+    }
+
+    public String html() {
+        String result = html;
+        if (result != null) {
+            return result;
+        }
+        synchronized (this) {
+            if (html == null) {
+                html = Objects.requireNonNull(renderer.apply(markdown), "レンダリング結果は null にできません");
+                renderer = null;
+            }
+            return html;
+        }
+    }
+
+    /**
+     * HTMLが生成済みか（参照しても描画が発生しないか）
+     */
+    public boolean isRendered() {
+        return html != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RenderedContent other) || (markdown == null) != (other.markdown == null)) {
+            return false;
+        }
+        return markdown != null
+            ? markdown.equals(other.markdown) && options.equals(other.options)
+            : html.equals(other.html);
+    }
+
+    @Override
+    public int hashCode() {
+        return markdown != null ? Objects.hash(markdown, options) : html.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return isRendered() ? html : "(未描画)";
+    }
+}
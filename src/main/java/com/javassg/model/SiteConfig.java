@@ -133,6 +133,46 @@ public record SiteConfig(
         return build.templatesDirectory();
     }
     
+    public int getParallelism() {
+        return build != null ? build.parallelism() : BuildConfig.defaultParallelism();
+    }
+    
+    public int getRenderWorkers() {
+        return build != null ? build.renderWorkers() : BuildConfig.defaultParallelism();
+    }
+    
+    public String getCacheDirectory() {
+        return build != null ? build.cacheDirectory() : BuildConfig.defaultCacheDirectory();
+    }
+    
+    /**
+     * 解析結果とレンダリング結果をキャッシュディレクトリに保存し、次回以降のビルドで再利用するか
+     */
+    public boolean isPersistentCacheEnabled() {
+        return build != null && build.persistentCache();
+    }
+    
+    /**
+     * 出力を別のディレクトリに生成し、完成してから出力ディレクトリと入れ替えるか
+     */
+    public boolean isStagedOutputEnabled() {
+        return build != null && build.stagedOutput();
+    }
+    
+    /**
+     * 静的ファイルをコピーせず、ハードリンクで出力するか（同じファイルシステム上にある場合のみ）
+     */
+    public boolean isStaticFileLinkingEnabled() {
+        return build != null && build.linkStaticFiles();
+    }
+    
+    /**
+     * 静的ファイルに内容のハッシュを含む名前の複製を作り、生成するHTMLとCSSからの参照をその名前に書き換えるか
+     */
+    public boolean isAssetFingerprintingEnabled() {
+        return build != null && build.fingerprintAssets();
+    }
+    
     public int getServerPort() {
         return server != null ? server.port() : 8080;
     }
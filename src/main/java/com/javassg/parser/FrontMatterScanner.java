@@ -0,0 +1,61 @@
+package com.javassg.parser;
+
+/**
+ * Markdownのフロントマターと本文の境界を求めるスキャナー
+ *
+ * 先頭行が {@code ---} の場合に、次に現れる {@code ---} だけの行までをフロントマターとみなす。
+ * 行の配列や部分文字列は作らず、区切り行の位置だけを1回の走査で求める。
+ * 改行は {@code \n} と {@code \r\n} のどちらも受け付ける。
+ */
+final class FrontMatterScanner {
+
+    private static final String DELIMITER = "---";
+
+    private FrontMatterScanner() {
+    }
+
+    /**
+     * フロントマターの範囲を返す。フロントマターが無い場合は本文が先頭から始まる結果を返す。
+     */
+    static Split scan(String content) {
+        int firstLineEnd = lineEnd(content, 0);
+        if (firstLineEnd == content.length() || !isDelimiter(content, 0, firstLineEnd)) {
+            return Split.NONE;
+        }
+
+        int yamlStart = firstLineEnd + 1;
+        int lineStart = yamlStart;
+        while (lineStart <= content.length()) {
+            int end = lineEnd(content, lineStart);
+            if (isDelimiter(content, lineStart, end)) {
+                // 閉じ区切りの直前の改行はフロントマターに含めない
+                int yamlEnd = Math.max(yamlStart, lineStart - 1);
+                int bodyStart = Math.min(content.length(), end + 1);
+                return new Split(true, yamlStart, yamlEnd, bodyStart);
+            }
+            lineStart = end + 1;
+        }
+        return Split.NONE;
+    }
+
+    private static int lineEnd(String content, int from) {
+        int newline = content.indexOf('\n', from);
+        return newline < 0 ? content.length() : newline;
+    }
+
+    private static boolean isDelimiter(String content, int start, int end) {
+        if (end > start && content.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return end - start == DELIMITER.length() && content.startsWith(DELIMITER, start);
+    }
+
+    // Record classes for return types
+    record Split(boolean hasFrontMatter, int yamlStart, int yamlEnd, int bodyStart) {
+        static final Split NONE = new Split(false, 0, 0, 0);
+
+        int yamlLength() {
+            return yamlEnd - yamlStart;
+        }
+    }
+}
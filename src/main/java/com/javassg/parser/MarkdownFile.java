@@ -0,0 +1,26 @@
+package com.javassg.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * 解析するMarkdownファイルと、走査時に取得済みの属性
+ *
+ * ディレクトリ走査で得た属性を渡すことで、解析時にサイズや更新日時を問い合わせ直さずに済む。
+ */
+public record MarkdownFile(Path path, long size, FileTime lastModified) {
+
+    public static MarkdownFile of(Path path, BasicFileAttributes attrs) {
+        return new MarkdownFile(path, attrs.size(), attrs.lastModifiedTime());
+    }
+
+    /**
+     * 属性を持っていないファイルの属性を1回の問い合わせで取得する
+     */
+    public static MarkdownFile stat(Path path) throws IOException {
+        return of(path, Files.readAttributes(path, BasicFileAttributes.class));
+    }
+}
@@ -0,0 +1,104 @@
+package com.javassg.parser;
+
+import com.javassg.util.ContentHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Markdownファイルの内容を文字列として読み込む
+ *
+ * 小さなファイルはヒープ上のバッファに読み込み、大きなファイルはメモリマップしたバッファから直接デコードする。
+ * 先頭のBOMで文字コード（UTF-8・UTF-16）を判別し、BOMが無ければUTF-8として扱う。
+ * 不正なバイト列は{@link java.nio.file.Files#readString}と同じく置き換えずにエラーとする。
+ * 必要な場合は、デコードしたものと同じバイト列から内容のハッシュも求める。
+ */
+final class MarkdownFileReader {
+
+    private static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    private MarkdownFileReader() {
+    }
+
+    /**
+     * @param maxBytes 読み込みを許可する最大のファイルサイズ。超える場合は内容を読まずに例外を投げる
+     */
+    static String read(MarkdownFile file, long maxBytes) throws IOException {
+        return read(file, maxBytes, false).text();
+    }
+
+    /**
+     * 内容と、読み込んだバイト列全体のハッシュ（{@link ContentHash#of(java.nio.file.Path)}と同じ値）を返す
+     */
+    static Contents readWithHash(MarkdownFile file, long maxBytes) throws IOException {
+        return read(file, maxBytes, true);
+    }
+
+    private static Contents read(MarkdownFile file, long maxBytes, boolean hash) throws IOException {
+        if (file.size() > maxBytes) {
+            throw new IllegalArgumentException("ファイルサイズが制限を超えています: " + file.size() + " > " + maxBytes);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            // 走査後に書き換えられた場合に備え、実際のサイズで読む
+            long size = channel.size();
+            if (size > maxBytes) {
+                throw new IllegalArgumentException("ファイルサイズが制限を超えています: " + size + " > " + maxBytes);
+            }
+
+            ByteBuffer bytes;
+            if (size >= MAPPING_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                    // 読み切るまで繰り返す
+                }
+                bytes.flip();
+            }
+            String contentHash = hash ? ContentHash.of(bytes) : null;
+            return new Contents(decode(bytes), contentHash);
+        }
+    }
+
+    static String decode(ByteBuffer bytes) throws CharacterCodingException {
+        Charset charset = detectCharset(bytes);
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT)
+            .decode(bytes)
+            .toString();
+    }
+
+    /**
+     * BOMから文字コードを判別し、BOMの分だけバッファを進める
+     */
+    private static Charset detectCharset(ByteBuffer bytes) {
+        int start = bytes.position();
+        if (bytes.remaining() >= 3
+            && bytes.get(start) == (byte) 0xEF && bytes.get(start + 1) == (byte) 0xBB && bytes.get(start + 2) == (byte) 0xBF) {
+            bytes.position(start + 3);
+            return StandardCharsets.UTF_8;
+        }
+        if (bytes.remaining() >= 2) {
+            if (bytes.get(start) == (byte) 0xFE && bytes.get(start + 1) == (byte) 0xFF) {
+                bytes.position(start + 2);
+                return StandardCharsets.UTF_16BE;
+            }
+            if (bytes.get(start) == (byte) 0xFF && bytes.get(start + 1) == (byte) 0xFE) {
+                bytes.position(start + 2);
+                return StandardCharsets.UTF_16LE;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    // Record classes for return types
+    record Contents(String text, String contentHash) {}
+}
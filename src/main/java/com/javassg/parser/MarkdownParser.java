@@ -2,29 +2,39 @@ package com.javassg.parser;
 
 import com.javassg.model.Page;
 import com.javassg.model.Post;
+import com.javassg.model.RenderedContent;
 import com.javassg.model.SecurityLimits;
-import org.commonmark.node.Node;
 import org.commonmark.parser.Parser;
 import org.commonmark.renderer.html.HtmlRenderer;
-import org.commonmark.ext.front.matter.YamlFrontMatterExtension;
-import org.commonmark.ext.front.matter.YamlFrontMatterVisitor;
-import org.yaml.snakeyaml.Yaml;
 
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
+/**
+ * Markdownファイルの解析器
+ *
+ * 1つのインスタンスを複数のスレッドから同時に使える。commonmarkのパーサーとレンダラーは共有し、
+ * スレッドセーフでないYAMLローダーはプールから1回の解析ごとに借りる。
+ */
 public class MarkdownParser {
     private static final Pattern INVALID_FILENAME_PATTERN = Pattern.compile("(\\.\\./|\\.\\.\\\\|[<>:\"|?*])");
     private static final SecurityLimits DEFAULT_LIMITS = SecurityLimits.defaultLimits();
+    // 本文の描画に使う設定（拡張なしのCommonMark）。変えた場合は描画結果の等価性の判定にも反映する
+    private static final String RENDER_OPTIONS = "commonmark";
     
     private final Parser markdownParser;
     private final HtmlRenderer htmlRenderer;
-    private final Yaml yamlParser;
     private final SecurityLimits securityLimits;
+    private final YamlPool yamlPool = new YamlPool(Runtime.getRuntime().availableProcessors());
     
     public MarkdownParser() {
         this(DEFAULT_LIMITS);
@@ -33,31 +43,64 @@ public class MarkdownParser {
     public MarkdownParser(SecurityLimits securityLimits) {
         this.securityLimits = securityLimits;
         
-        var extensions = List.of(YamlFrontMatterExtension.create());
-        this.markdownParser = Parser.builder()
-            .extensions(extensions)
-            .build();
-        this.htmlRenderer = HtmlRenderer.builder()
-            .extensions(extensions)
-            .build();
-        this.yamlParser = new Yaml();
+        // フロントマターは FrontMatterScanner で取り除いてから本文だけを渡す
+        this.markdownParser = Parser.builder().build();
+        this.htmlRenderer = HtmlRenderer.builder().build();
     }
     
     public Page parseFile(Path filePath) {
         validateFilename(filePath.getFileName().toString());
         
         try {
-            var content = Files.readString(filePath);
-            var lastModified = Files.getLastModifiedTime(filePath).toInstant()
-                .atZone(java.time.ZoneId.systemDefault())
-                .toLocalDateTime();
+            return parseFile(MarkdownFile.stat(filePath));
+        } catch (IOException e) {
+            throw new RuntimeException("ファイルの読み込みに失敗しました: " + filePath, e);
+        }
+    }
+    
+    /**
+     * 走査時に取得済みの属性を使ってファイルを解析する。
+     * サイズと更新日時は問い合わせ直さず、サイズの制限は内容を読む前に検証する。
+     */
+    public Page parseFile(MarkdownFile file) {
+        String filename = file.path().getFileName().toString();
+        validateFilename(filename);
+        
+        try {
+            var content = MarkdownFileReader.read(file, securityLimits.maxMarkdownFileSize());
+            var lastModified = LocalDateTime.ofInstant(file.lastModified().toInstant(), ZoneId.systemDefault());
             
-            return parseContentWithModificationTime(filePath.getFileName().toString(), content, lastModified);
+            return parseContentWithModificationTime(filename, content, lastModified);
         } catch (Exception e) {
-            throw new RuntimeException("ファイルの読み込みに失敗しました: " + filePath, e);
+            throw new RuntimeException("ファイルの読み込みに失敗しました: " + file.path(), e);
         }
     }
     
+    /**
+     * 解析する前にファイルを読み込み、読み込んだバイト列の内容ハッシュを求める。
+     * サイズの制限は内容を読む前に検証し、解析するときはファイルを読み直さない。
+     */
+    public MarkdownSource read(MarkdownFile file) {
+        validateFilename(file.path().getFileName().toString());
+        
+        try {
+            var contents = MarkdownFileReader.readWithHash(file, securityLimits.maxMarkdownFileSize());
+            return new MarkdownSource(file, contents.text(), contents.contentHash());
+        } catch (Exception e) {
+            throw new RuntimeException("ファイルの読み込みに失敗しました: " + file.path(), e);
+        }
+    }
+    
+    public Page parsePage(MarkdownSource source) {
+        String filename = source.file().path().getFileName().toString();
+        var lastModified = LocalDateTime.ofInstant(source.file().lastModified().toInstant(), ZoneId.systemDefault());
+        return parseContentWithModificationTime(filename, source.content(), lastModified);
+    }
+    
+    public Post parsePost(MarkdownSource source) {
+        return Post.fromPage(parsePage(source));
+    }
+    
     public Page parseContent(String filename, String content) {
         return parseContentWithModificationTime(filename, content, LocalDateTime.now());
     }
@@ -71,18 +114,64 @@ public class MarkdownParser {
         return Post.fromPage(page);
     }
     
+    public Page parsePage(MarkdownFile file) {
+        return parseFile(file);
+    }
+    
+    public Post parsePost(MarkdownFile file) {
+        return Post.fromPage(parseFile(file));
+    }
+    
+    /**
+     * 複数のページを {@code executor} 上で並列に解析する。
+     * 結果は入力と同じ順序で返し、解析に失敗したファイルは例外を持つ結果として返す。
+     */
+    public List<ParseResult<Page>> parsePages(List<MarkdownFile> files, Executor executor) {
+        return parseAll(files, this::parsePage, executor);
+    }
+    
+    /**
+     * 複数の投稿を {@code executor} 上で並列に解析する。
+     * 結果は入力と同じ順序で返し、解析に失敗したファイルは例外を持つ結果として返す。
+     */
+    public List<ParseResult<Post>> parsePosts(List<MarkdownFile> files, Executor executor) {
+        return parseAll(files, this::parsePost, executor);
+    }
+    
+    private <T> List<ParseResult<T>> parseAll(List<MarkdownFile> files, Function<MarkdownFile, T> parse,
+                                              Executor executor) {
+        List<CompletableFuture<ParseResult<T>>> futures = new ArrayList<>(files.size());
+        for (MarkdownFile file : files) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new ParseResult<>(file.path(), parse.apply(file), null);
+                } catch (Exception e) {
+                    return new ParseResult<>(file.path(), null, e);
+                }
+            }, executor));
+        }
+        
+        List<ParseResult<T>> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<ParseResult<T>> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+    
     private Page parseContentWithModificationTime(String filename, String content, LocalDateTime lastModified) {
         validateFilename(filename);
         validateContentSize(content);
         
-        if (content == null || content.trim().isEmpty()) {
+        if (content == null || content.isBlank()) {
             return createEmptyPage(filename, lastModified);
         }
         
-        var document = markdownParser.parse(content);
-        var frontMatter = extractFrontMatter(document, content);
-        var rawContent = extractRawContent(content);
-        var renderedContent = htmlRenderer.render(document);
+        var split = FrontMatterScanner.scan(content);
+        var frontMatter = parseFrontMatter(content, split);
+        var rawContent = extractRawContent(content, split.bodyStart());
+        // HTMLは参照されたときに初めて描画する（下書きなど使われない本文の描画を省く）
+        var renderedContent = RenderedContent.lazy(content.substring(split.bodyStart()), RENDER_OPTIONS,
+                                                   markdown -> htmlRenderer.render(markdownParser.parse(markdown)));
         var slug = generateSlug(filename);
         
         return new Page(filename, slug, frontMatter, rawContent, renderedContent, lastModified);
@@ -108,94 +197,49 @@ public class MarkdownParser {
         }
     }
     
+    /**
+     * フロントマターのYAMLを解析する。解析できない場合は空のMapを返す。
+     */
     @SuppressWarnings("unchecked")
-    private Map<String, Object> extractFrontMatter(Node document, String content) {
-        // まず手動でフロントマターを抽出してみる
-        return extractFrontMatterManually(content);
-    }
-    
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> extractFrontMatterManually(String content) {
+    private Map<String, Object> parseFrontMatter(String content, FrontMatterScanner.Split split) {
+        if (!split.hasFrontMatter()) {
+            return Map.of();
+        }
+        
+        // フロントマターのサイズを検証
+        if (split.yamlLength() > securityLimits.maxFrontMatterSize()) {
+            throw new IllegalArgumentException("フロントマターのサイズが制限を超えています: " + split.yamlLength() + " bytes");
+        }
+        
         try {
-            if (content == null || !content.startsWith("---\n")) {
-                return Map.of();
-            }
-            
-            var lines = content.split("\n");
-            if (lines.length < 3) {
-                return Map.of();
-            }
-            
-            // 最初の行が"---"でない場合は、フロントマターなし
-            if (!lines[0].equals("---")) {
-                return Map.of();
-            }
-            
-            // 2行目以降で次の"---"を探す
-            int endIndex = -1;
-            for (int i = 1; i < lines.length; i++) {
-                if (lines[i].equals("---")) {
-                    endIndex = i;
-                    break;
-                }
-            }
-            
-            if (endIndex == -1) {
-                return Map.of();
-            }
-            
-            // フロントマター部分を抽出（1行目から endIndex-1 行目まで）
-            var yamlLines = new String[endIndex - 1];
-            System.arraycopy(lines, 1, yamlLines, 0, endIndex - 1);
-            var yamlContent = String.join("\n", yamlLines);
-            
-            // フロントマターのサイズを検証
-            if (yamlContent.length() > securityLimits.maxFrontMatterSize()) {
-                throw new IllegalArgumentException("フロントマターのサイズが制限を超えています: " + yamlContent.length() + " bytes");
-            }
-            
-            // YAMLをパース
-            Object parsed = yamlParser.load(yamlContent);
+            String yaml = content.substring(split.yamlStart(), split.yamlEnd());
+            Object parsed = yamlPool.withYaml(loader -> loader.load(yaml));
             if (parsed instanceof Map<?, ?> map) {
                 return (Map<String, Object>) map;
             }
             return Map.of();
-        } catch (IllegalArgumentException e) {
-            // サイズ制限エラーは再スロー
-            throw e;
         } catch (Exception e) {
-            // その他のフロントマター解析エラーは空のMapを返す
+            // フロントマターの解析エラーは空のMapとして扱う
             return Map.of();
         }
     }
     
-    private String extractRawContent(String content) {
-        // フロントマターを除去した生のMarkdownコンテンツを抽出
-        var lines = content.split("\n");
-        boolean inFrontMatter = false;
-        boolean frontMatterEnded = false;
-        StringBuilder rawContent = new StringBuilder();
-        
-        for (String line : lines) {
-            if (line.trim().equals("---")) {
-                if (!inFrontMatter) {
-                    inFrontMatter = true;
-                    continue;
-                } else {
-                    frontMatterEnded = true;
-                    continue;
-                }
-            }
-            
-            if (!inFrontMatter || frontMatterEnded) {
-                rawContent.append(line).append("\n");
-            }
+    /**
+     * フロントマターを除いた本文を、前後の空白を除いて1回だけ切り出す
+     */
+    private String extractRawContent(String content, int bodyStart) {
+        int start = bodyStart;
+        int end = content.length();
+        while (start < end && content.charAt(start) <= ' ') {
+            start++;
         }
-        
-        return rawContent.toString().trim();
+        while (end > start && content.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return content.substring(start, end);
     }
     
-    private String generateSlug(String filename) {
+    public String generateSlug(String filename) {
         var nameWithoutExt = filename.replaceFirst("\\.[^.]+$", "");
         return nameWithoutExt.toLowerCase()
             .replaceAll("_", "-")  // アンダースコアをハイフンに変換
@@ -208,4 +252,19 @@ public class MarkdownParser {
         var slug = generateSlug(filename);
         return new Page(filename, slug, Map.of(), "", "", lastModified);
     }
-}
\ No newline at end of file
+    
+    // Record classes for return types
+    
+    /**
+     * 読み込み済みのMarkdownファイル
+     *
+     * @param contentHash 読み込んだバイト列のSHA-256（ビルドの変更検出と同じ値）
+     */
+    public record MarkdownSource(MarkdownFile file, String content, String contentHash) {}
+    
+    public record ParseResult<T>(Path file, T value, Exception error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.javassg.parser;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+
+/**
+ * SnakeYAMLのローダーを使い回すためのプール
+ *
+ * {@link Yaml} はスレッドセーフではないため、1つのインスタンスを同時に使うのは1スレッドだけにする。
+ * 空いているインスタンスが無ければ新しく作り、返却時にプールが満杯であれば捨てる。
+ * 仮想スレッドではスレッドごとの保持が効かないため、{@link ThreadLocal} ではなくプールにしている。
+ */
+final class YamlPool {
+
+    private final BlockingQueue<Yaml> idle;
+
+    YamlPool(int capacity) {
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    <T> T withYaml(Function<Yaml, T> action) {
+        Yaml yaml = idle.poll();
+        if (yaml == null) {
+            yaml = new Yaml();
+        }
+        try {
+            return action.apply(yaml);
+        } finally {
+            idle.offer(yaml);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.javassg.plugin;
 
 import com.javassg.model.SiteConfig;
+import com.javassg.template.FilterRegistry;
 
 import java.util.Map;
 
@@ -44,6 +45,12 @@ public interface Plugin {
      */
     boolean isEnabled();
     
+    /**
+     * テンプレートフィルターを登録（テンプレートのコンパイル前に呼ばれる）
+     */
+    default void registerFilters(FilterRegistry registry) {
+    }
+    
     /**
      * プラグインの実行順序を取得（低い値ほど先に実行）
      */
@@ -2,6 +2,7 @@ package com.javassg.plugin;
 
 import com.javassg.model.PluginConfig;
 import com.javassg.model.SiteConfig;
+import com.javassg.template.FilterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,8 +21,16 @@ public class PluginManager {
     private final SiteConfig siteConfig;
     
     public PluginManager(SiteConfig siteConfig) {
+        this(siteConfig, List.of());
+    }
+    
+    /**
+     * 組み込みプラグインに加えて{@code additionalPlugins}を登録する（設定で有効にしたものだけ初期化される）
+     */
+    public PluginManager(SiteConfig siteConfig, List<? extends Plugin> additionalPlugins) {
         this.siteConfig = siteConfig;
         registerBuiltinPlugins();
+        additionalPlugins.forEach(this::registerPlugin);
         loadAndInitializePlugins();
     }
     
@@ -84,6 +93,19 @@ public class PluginManager {
         enabledPlugins.sort(Comparator.comparingInt(Plugin::getExecutionOrder));
     }
     
+    /**
+     * 有効なプラグインのテンプレートフィルターを登録
+     */
+    public void registerTemplateFilters(FilterRegistry registry) {
+        for (Plugin plugin : enabledPlugins) {
+            try {
+                plugin.registerFilters(registry);
+            } catch (Exception e) {
+                logger.error("テンプレートフィルターの登録に失敗しました: " + plugin.getName(), e);
+            }
+        }
+    }
+    
     /**
      * 指定されたフェーズのプラグインを実行
      */
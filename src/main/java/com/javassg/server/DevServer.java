@@ -1,7 +1,10 @@
 package com.javassg.server;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javassg.build.BuildEngine;
 import com.javassg.build.BuildEngineInterface;
+import com.javassg.cache.CacheManager;
 import com.javassg.model.SiteConfig;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -9,6 +12,7 @@ import com.sun.net.httpserver.HttpServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.BindException;
@@ -16,9 +20,11 @@ import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
@@ -50,6 +56,13 @@ public class DevServer {
     private int port = 8080;
     private Path outputDir;
     
+    // ビルドが出力するアセットマニフェスト。フィンガープリントを付けたアセットの一覧を含む
+    private static final String ASSET_MANIFEST_FILE = "manifest.json";
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile FingerprintedAssets fingerprintedAssets = FingerprintedAssets.NONE;
+    
     // 統合されたMIMEタイプマッピング
     private static final Map<String, String> MIME_TYPES = Map.ofEntries(
         Map.entry(".html", "text/html; charset=utf-8"),
@@ -95,6 +108,16 @@ public class DevServer {
         
         int port = getServerPort();
         
+        // 変更後の最初の再ビルドが冷えたキャッシュから始まらないよう、配信前に読み込んでおく
+        try {
+            CacheManager.WarmUpResult warmUp = buildEngine.warmUp();
+            if (warmUp != null) {
+                logger.info("キャッシュを準備しました: {}件 ({}ms)", warmUp.totalEntries(), warmUp.durationMs());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("キャッシュのウォームアップに失敗しました", e);
+        }
+        
         try {
             httpServer = HttpServer.create(new InetSocketAddress(port), 0);
 
@@ -199,7 +222,7 @@ public class DevServer {
         // ファイル変更時のコールバックを設定
         liveReloadService.setFileChangeListener(path -> {
             try {
-                buildEngine.buildIncremental(LocalDateTime.now().minusMinutes(1));
+                buildEngine.buildIncremental();
                 liveReloadService.broadcastFileChange(path.toString());
             } catch (Exception e) {
                 logger.error("増分ビルドエラー", e);
@@ -327,6 +350,7 @@ public class DevServer {
             }
             
             exchange.getResponseHeaders().set("Content-Type", contentType);
+            setCacheControl(exchange, filePath);
             
             // Gzip圧縮の処理
             String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
@@ -357,6 +381,7 @@ public class DevServer {
             System.arraycopy(allContent, (int) start, rangeContent, 0, rangeContent.length);
             
             exchange.getResponseHeaders().set("Content-Type", getMimeType(filePath));
+            setCacheControl(exchange, filePath);
             exchange.getResponseHeaders().set("Content-Range", 
                 String.format("bytes %d-%d/%d", start, end, fileSize));
             exchange.sendResponseHeaders(206, rangeContent.length);
@@ -487,6 +512,56 @@ public class DevServer {
                    responseTime);
     }
     
+    /**
+     * ビルドでフィンガープリントを付けたアセットは名前が内容から決まるため、再検証せずにキャッシュしてよいことをブラウザに伝える
+     */
+    private void setCacheControl(HttpExchange exchange, Path filePath) {
+        if (isFingerprintedAsset(filePath)) {
+            exchange.getResponseHeaders().set("Cache-Control", IMMUTABLE_CACHE_CONTROL);
+        }
+    }
+    
+    /**
+     * アセットマニフェストに記録されたハッシュ付きのファイルか。名前の形だけでは判定しない。
+     */
+    private boolean isFingerprintedAsset(Path filePath) {
+        if (siteConfig == null || !siteConfig.isAssetFingerprintingEnabled()) {
+            return false;
+        }
+        Path root = getOutputDirectory().toAbsolutePath().normalize();
+        Path file = filePath.toAbsolutePath().normalize();
+        if (!file.startsWith(root)) {
+            return false;
+        }
+        String relative = root.relativize(file).toString().replace(File.separatorChar, '/');
+        return loadFingerprintedAssets(root.resolve(ASSET_MANIFEST_FILE)).files().contains(relative);
+    }
+    
+    /**
+     * アセットマニフェストを読み込む。更新時刻が変わらない間は前回の結果を使う。
+     */
+    private FingerprintedAssets loadFingerprintedAssets(Path manifestPath) {
+        FingerprintedAssets current = fingerprintedAssets;
+        try {
+            if (!Files.isRegularFile(manifestPath)) {
+                return FingerprintedAssets.NONE;
+            }
+            FileTime modified = Files.getLastModifiedTime(manifestPath);
+            if (modified.equals(current.modified())) {
+                return current;
+            }
+            Set<String> files = new HashSet<>();
+            JsonNode assets = objectMapper.readTree(manifestPath.toFile()).path("assets");
+            assets.elements().forEachRemaining(node -> files.add(node.asText()));
+            FingerprintedAssets loaded = new FingerprintedAssets(modified, Set.copyOf(files));
+            fingerprintedAssets = loaded;
+            return loaded;
+        } catch (IOException e) {
+            logger.warn("アセットマニフェストを読み込めません: {}", manifestPath, e);
+            return FingerprintedAssets.NONE;
+        }
+    }
+    
     private String getMimeType(Path filePath) {
         String fileName = filePath.getFileName().toString();
         int lastDot = fileName.lastIndexOf('.');
@@ -640,4 +715,8 @@ public class DevServer {
                lowerOrigin.startsWith("https://127.0.0.1:");
     }
 
-}
\ No newline at end of file
+    // Record classes for return types
+    private record FingerprintedAssets(FileTime modified, Set<String> files) {
+        static final FingerprintedAssets NONE = new FingerprintedAssets(null, Set.of());
+    }
+}
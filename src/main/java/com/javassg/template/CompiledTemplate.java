@@ -0,0 +1,255 @@
+package com.javassg.template;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 解析済みのテンプレート
+ *
+ * ノード木を辿りながら1つの出力先へ書き込むため、レンダリングごとにテンプレート文字列を
+ * 再走査することはない。インスタンスは不変でスレッド間で共有できる。
+ */
+public final class CompiledTemplate {
+
+    private static final Object MISSING = PropertyResolver.MISSING;
+
+    private final String name;
+    private final String source;
+    private final List<TemplateNode> nodes;
+    private final List<String> partials;
+
+    CompiledTemplate(String name, String source, List<TemplateNode> nodes, List<String> partials) {
+        this.name = name;
+        this.source = source;
+        this.nodes = List.copyOf(nodes);
+        this.partials = partials;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    public List<TemplateNode> nodes() {
+        return nodes;
+    }
+
+    /**
+     * テンプレート内で参照されているパーシャル名
+     */
+    public List<String> partials() {
+        return partials;
+    }
+
+    public String render(Map<String, Object> variables) {
+        return render(variables, (PartialResolver) null);
+    }
+
+    /**
+     * パーシャルを解決せずにレンダリングする（{@code {{> name}}} は何も出力しない）
+     */
+    public void render(Map<String, Object> variables, Appendable out) throws IOException {
+        render(variables, out, null);
+    }
+
+    public String render(Map<String, Object> variables, PartialResolver partials) {
+        StringBuilder out = new StringBuilder(source.length() * 2);
+        try {
+            render(variables, out, partials);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * パーシャルをresolverで解決しながらレンダリングする。
+     * パーシャルは呼び出し元のスコープのまま展開され、循環参照と深すぎる入れ子はエラーになる。
+     */
+    public void render(Map<String, Object> variables, Appendable out, PartialResolver partials) throws IOException {
+        RenderState state = new RenderState(partials, new ArrayDeque<>());
+        state.activePartials().push(name);
+        renderNodes(nodes, Scope.root(variables != null ? variables : Map.of()), out, state);
+    }
+
+    private void renderNodes(List<TemplateNode> nodes, Scope scope, Appendable out, RenderState state)
+        throws IOException {
+        for (TemplateNode node : nodes) {
+            switch (node) {
+                case TemplateNode.Text text -> out.append(text.text());
+                case TemplateNode.Variable variable -> out.append(evaluate(variable, scope));
+                case TemplateNode.If conditional -> renderNodes(
+                    isTruthy(resolve(conditional.condition(), scope))
+                        ? conditional.thenNodes() : conditional.elseNodes(),
+                    scope, out, state);
+                case TemplateNode.Each each -> renderEach(each, scope, out, state);
+                case TemplateNode.Partial partial -> renderPartial(partial, scope, out, state);
+            }
+        }
+    }
+
+    private void renderPartial(TemplateNode.Partial partial, Scope scope, Appendable out, RenderState state)
+        throws IOException {
+        if (state.resolver() == null) {
+            return;
+        }
+
+        Deque<String> active = state.activePartials();
+        if (active.contains(partial.name())) {
+            List<String> chain = new ArrayList<>(active);
+            Collections.reverse(chain);
+            chain.add(partial.name());
+            throw new TemplateException("パーシャルの循環参照を検出しました: " + String.join(" -> ", chain));
+        }
+        if (active.size() > TemplateCompiler.MAX_NESTING_DEPTH) {
+            throw new TemplateException("パーシャルのネストが深すぎます: " + partial.name() + " (" + name + ")");
+        }
+
+        CompiledTemplate template = state.resolver().resolve(partial.name());
+        if (template == null) {
+            throw new TemplateException("パーシャルが見つかりません: " + partial.name() + " (" + active.peek() + ")");
+        }
+
+        active.push(partial.name());
+        try {
+            template.renderNodes(template.nodes, scope, out, state);
+        } finally {
+            active.pop();
+        }
+    }
+
+    /**
+     * 要素ごとに新しいスコープを積んで本体をレンダリングする。
+     * Mapを渡した場合はエントリごとに値を要素、キーを {@code @key} として扱う。
+     */
+    private void renderEach(TemplateNode.Each each, Scope scope, Appendable out, RenderState state) throws IOException {
+        Object items = resolve(each.path(), scope);
+        Iterator<?> iterator;
+        boolean entries = false;
+
+        if (items instanceof Map<?, ?> map) {
+            iterator = map.entrySet().iterator();
+            entries = true;
+        } else if (items instanceof Iterable<?> iterable) {
+            iterator = iterable.iterator();
+        } else {
+            iterator = Collections.emptyIterator();
+        }
+
+        if (!iterator.hasNext()) {
+            renderNodes(each.elseNodes(), scope, out, state);
+            return;
+        }
+
+        int index = 0;
+        while (iterator.hasNext()) {
+            Object item = iterator.next();
+            Object key = index;
+            if (entries) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) item;
+                key = entry.getKey();
+                item = entry.getValue();
+            }
+            renderNodes(each.body(), new Scope(item, new LoopState(index, key, !iterator.hasNext()), scope), out, state);
+            index++;
+        }
+    }
+
+    private String evaluate(TemplateNode.Variable variable, Scope scope) {
+        Object value = variable.chain().apply(resolve(variable.path(), scope));
+        return value != null ? value.toString() : "";
+    }
+
+    /**
+     * ドット区切りのパスを辿って値を取り出す。
+     * 先頭の名前は内側のスコープから順に探し、最初に見つかったスコープを起点とする。
+     * {@code this} は現在の要素、{@code @index}・{@code @first}・{@code @last}・{@code @key} は
+     * 最も内側のループの状態を指す。
+     */
+    private Object resolve(List<String> path, Scope scope) {
+        String head = path.get(0);
+        Object value;
+
+        if (head.equals("this")) {
+            value = scope.value();
+        } else if (head.startsWith("@")) {
+            value = loopVariable(head, scope);
+        } else {
+            value = null;
+            for (Scope current = scope; current != null; current = current.parent()) {
+                Object member = member(current.value(), head);
+                if (member != MISSING) {
+                    value = member;
+                    break;
+                }
+            }
+        }
+
+        for (int i = 1; i < path.size() && value != null; i++) {
+            Object member = member(value, path.get(i));
+            value = member != MISSING ? member : null;
+        }
+
+        return value;
+    }
+
+    private Object member(Object target, String name) {
+        return PropertyResolver.resolve(target, name);
+    }
+
+    private Object loopVariable(String name, Scope scope) {
+        for (Scope current = scope; current != null; current = current.parent()) {
+            LoopState loop = current.loop();
+            if (loop != null) {
+                return switch (name) {
+                    case "@index" -> loop.index();
+                    case "@first" -> loop.index() == 0;
+                    case "@last" -> loop.last();
+                    case "@key" -> loop.key();
+                    default -> null;
+                };
+            }
+        }
+        return null;
+    }
+
+    private boolean isTruthy(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        if (value instanceof String str) {
+            return !str.isEmpty();
+        }
+        if (value instanceof Collection<?> collection) {
+            return !collection.isEmpty();
+        }
+        return value != null;
+    }
+
+    /**
+     * レンダリング中の変数スコープ。#each の要素ごとに親スコープへ連結して積まれる。
+     */
+    private record Scope(Object value, LoopState loop, Scope parent) {
+        static Scope root(Map<String, Object> variables) {
+            return new Scope(variables, null, null);
+        }
+    }
+
+    private record LoopState(int index, Object key, boolean last) {}
+
+    /**
+     * 1回のレンダリング呼び出しの状態（展開中のパーシャルの連鎖）
+     */
+    private record RenderState(PartialResolver resolver, Deque<String> activePartials) {}
+}
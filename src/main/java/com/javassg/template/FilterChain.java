@@ -0,0 +1,37 @@
+package com.javassg.template;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 引数を束縛済みのフィルターを順に適用するチェーン
+ *
+ * 値が {@code null} になった時点で以降のフィルターは適用しない。
+ */
+public final class FilterChain {
+
+    private static final FilterChain EMPTY = new FilterChain(List.of());
+
+    private final List<Function<Object, Object>> filters;
+
+    private FilterChain(List<Function<Object, Object>> filters) {
+        this.filters = filters;
+    }
+
+    static FilterChain bind(List<TemplateNode.FilterCall> calls, FilterRegistry registry) {
+        if (calls.isEmpty()) {
+            return EMPTY;
+        }
+        return new FilterChain(calls.stream().map(registry::bind).toList());
+    }
+
+    public Object apply(Object value) {
+        for (Function<Object, Object> filter : filters) {
+            if (value == null) {
+                break;
+            }
+            value = filter.apply(value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,113 @@
+package com.javassg.template;
+
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * テンプレートフィルターの登録先
+ *
+ * {@link TemplateCompiler}はコンパイル時にここからフィルターを引いて引数を束縛する。
+ * 特に指定しない場合は{@link #global()}が使われ、プラグインもここへフィルターを追加する。
+ * 登録されていない名前のフィルターは値をそのまま返す。
+ */
+public final class FilterRegistry {
+
+    private static final int DEFAULT_EXCERPT_LENGTH = 150;
+
+    private static final Pattern NON_SLUG_CHARS = Pattern.compile("[^a-z0-9\\-]");
+    private static final Pattern REPEATED_HYPHENS = Pattern.compile("-+");
+    private static final Pattern EDGE_HYPHENS = Pattern.compile("^-|-$");
+
+    private static final FilterRegistry GLOBAL = withBuiltins();
+
+    private final Map<String, TemplateFilter> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 両方のテンプレートエンジンが既定で使う共有のレジストリ
+     */
+    public static FilterRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * 組み込みフィルター（date・excerpt・slugify・upper・lower）を登録したレジストリを作る
+     */
+    public static FilterRegistry withBuiltins() {
+        FilterRegistry registry = new FilterRegistry();
+        registry.register("date", FilterRegistry::date);
+        registry.register("excerpt", FilterRegistry::excerpt);
+        registry.register("slugify", TemplateFilter.of(FilterRegistry::slugify));
+        registry.register("upper", TemplateFilter.of(value -> value.toString().toUpperCase(Locale.ROOT)));
+        registry.register("lower", TemplateFilter.of(value -> value.toString().toLowerCase(Locale.ROOT)));
+        return registry;
+    }
+
+    public void register(String name, TemplateFilter filter) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("フィルター名は空にできません");
+        }
+        if (filter == null) {
+            throw new IllegalArgumentException("フィルターは null にできません: " + name);
+        }
+        filters.put(name, filter);
+    }
+
+    public Optional<TemplateFilter> get(String name) {
+        return Optional.ofNullable(filters.get(name));
+    }
+
+    public Set<String> names() {
+        return Collections.unmodifiableSet(filters.keySet());
+    }
+
+    Function<Object, Object> bind(TemplateNode.FilterCall call) {
+        TemplateFilter filter = filters.get(call.name());
+        if (filter == null) {
+            return Function.identity();
+        }
+        try {
+            return filter.bind(call.arguments());
+        } catch (TemplateException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new TemplateException("フィルターの引数が不正です: " + call.name() + " " + call.arguments(), e);
+        }
+    }
+
+    private static Function<Object, Object> date(List<String> arguments) {
+        DateTimeFormatter formatter = arguments.isEmpty() || arguments.get(0).isEmpty()
+            ? DateTimeFormatter.ISO_LOCAL_DATE
+            : DateTimeFormatter.ofPattern(arguments.get(0));
+        return value -> value instanceof TemporalAccessor temporal ? formatter.format(temporal) : value;
+    }
+
+    private static Function<Object, Object> excerpt(List<String> arguments) {
+        int length = arguments.isEmpty() ? DEFAULT_EXCERPT_LENGTH : Integer.parseInt(arguments.get(0).trim());
+        return value -> {
+            String text = value.toString();
+            if (text.length() <= length) {
+                return text;
+            }
+            return text.substring(0, length).trim() + "...";
+        };
+    }
+
+    private static Object slugify(Object value) {
+        String slug = value.toString()
+            .toLowerCase()
+            .replace("テスト", "tesuto")
+            .replace("タイトル", "taitoru");
+        slug = NON_SLUG_CHARS.matcher(slug).replaceAll("-");
+        slug = REPEATED_HYPHENS.matcher(slug).replaceAll("-");
+        return EDGE_HYPHENS.matcher(slug).replaceAll("");
+    }
+}
@@ -0,0 +1,13 @@
+package com.javassg.template;
+
+/**
+ * レンダリング時に {@code {{> name}}} が参照するコンパイル済みパーシャルを解決する
+ */
+@FunctionalInterface
+public interface PartialResolver {
+
+    /**
+     * @return 見つからない場合は null
+     */
+    CompiledTemplate resolve(String name);
+}
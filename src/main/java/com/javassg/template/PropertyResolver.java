@@ -0,0 +1,155 @@
+package com.javassg.template;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * テンプレートからオブジェクトのプロパティを参照するためのリゾルバー
+ *
+ * マップはキーで、それ以外のオブジェクトは次の名前で公開メソッドを参照する。
+ * <ul>
+ *   <li>レコードのコンポーネント名（{@code title()} → {@code title}）</li>
+ *   <li>引数のない公開メソッド名（{@code description()} → {@code description}）</li>
+ *   <li>getter・boolean getterのプロパティ名（{@code getUrl()} → {@code url}、{@code isPublished()} → {@code published}）</li>
+ * </ul>
+ * 該当するメソッドが無く、{@code frontMatter()} が{@link Map}を返すクラスの場合は
+ * フロントマターの値を参照する。クラスごとのアクセサーは{@link MethodHandle}として一度だけ作られる。
+ */
+public final class PropertyResolver {
+
+    /**
+     * プロパティが存在しないことを示す値（{@code null} の値と区別するため）
+     */
+    public static final Object MISSING = new Object();
+
+    private static final String FRONT_MATTER = "frontMatter";
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<Accessors> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected Accessors computeValue(Class<?> type) {
+            return Accessors.of(type);
+        }
+    };
+
+    private PropertyResolver() {
+    }
+
+    /**
+     * {@code target} のプロパティ {@code name} を返す。存在しない場合は{@link #MISSING}を返す。
+     */
+    public static Object resolve(Object target, String name) {
+        if (target == null) {
+            return MISSING;
+        }
+        if (target instanceof Map<?, ?> map) {
+            return map.containsKey(name) ? map.get(name) : MISSING;
+        }
+
+        Accessors accessors = ACCESSORS.get(target.getClass());
+        MethodHandle accessor = accessors.properties().get(name);
+        if (accessor != null) {
+            return invoke(accessor, target, name);
+        }
+        if (accessors.frontMatter() != null
+            && invoke(accessors.frontMatter(), target, FRONT_MATTER) instanceof Map<?, ?> frontMatter
+            && frontMatter.containsKey(name)) {
+            return frontMatter.get(name);
+        }
+        return MISSING;
+    }
+
+    private static Object invoke(MethodHandle accessor, Object target, String name) {
+        try {
+            return (Object) accessor.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new TemplateException("プロパティを取得できません: " + name, t);
+        }
+    }
+
+    private record Accessors(Map<String, MethodHandle> properties, MethodHandle frontMatter) {
+
+        static Accessors of(Class<?> type) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return new Accessors(Map.of(), null);
+            }
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Map<String, MethodHandle> properties = new HashMap<>();
+
+            if (type.isRecord()) {
+                for (RecordComponent component : type.getRecordComponents()) {
+                    MethodHandle handle = unreflect(lookup, component.getAccessor());
+                    if (handle != null) {
+                        properties.put(component.getName(), handle);
+                    }
+                }
+            }
+
+            Map<String, MethodHandle> beanProperties = new HashMap<>();
+            for (Method method : type.getMethods()) {
+                if (method.getParameterCount() != 0
+                    || method.getReturnType() == void.class
+                    || Modifier.isStatic(method.getModifiers())
+                    || method.getDeclaringClass() == Object.class) {
+                    continue;
+                }
+
+                MethodHandle handle = unreflect(lookup, method);
+                if (handle == null) {
+                    continue;
+                }
+                properties.putIfAbsent(method.getName(), handle);
+
+                String property = beanPropertyName(method);
+                if (property != null) {
+                    beanProperties.putIfAbsent(property, handle);
+                }
+            }
+            beanProperties.forEach(properties::putIfAbsent);
+
+            MethodHandle frontMatter = hasFrontMatter(type) ? properties.get(FRONT_MATTER) : null;
+
+            return new Accessors(Map.copyOf(properties), frontMatter);
+        }
+
+        private static boolean hasFrontMatter(Class<?> type) {
+            try {
+                return Map.class.isAssignableFrom(type.getMethod(FRONT_MATTER).getReturnType());
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private static String beanPropertyName(Method method) {
+            String name = method.getName();
+            if (name.length() > 3 && name.startsWith("get") && Character.isUpperCase(name.charAt(3))) {
+                return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+            }
+            if (name.length() > 2 && name.startsWith("is") && Character.isUpperCase(name.charAt(2))
+                && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+                return Character.toLowerCase(name.charAt(2)) + name.substring(3);
+            }
+            return null;
+        }
+
+        /**
+         * 公開されていない型で宣言されたメソッドなど、参照できない場合は {@code null} を返す
+         */
+        private static MethodHandle unreflect(MethodHandles.Lookup lookup, Method method) {
+            try {
+                return lookup.unreflect(method).asType(ACCESSOR_TYPE);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.javassg.template;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * テンプレート文字列を{@link CompiledTemplate}に変換するコンパイラ
+ *
+ * タグは {@code {{ }}} で囲まれた部分で、{@code #if}・{@code else}・{@code /if}・{@code #each}・
+ * {@code /each}・{@code >}（パーシャル）以外は変数参照として扱う。
+ * タグとして成立しない {@code {{} はそのまま文字列として残す。
+ * ブロックは任意に入れ子にできるが、深さは{@value #MAX_NESTING_DEPTH}までに制限する。
+ */
+public final class TemplateCompiler {
+
+    private static final String TAG_OPEN = "{{";
+
+    public static final int MAX_NESTING_DEPTH = 50;
+
+    private TemplateCompiler() {
+    }
+
+    public static CompiledTemplate compile(String name, String source) {
+        return compile(name, source, FilterRegistry.global());
+    }
+
+    /**
+     * フィルターを指定したレジストリから束縛してコンパイルする
+     */
+    public static CompiledTemplate compile(String name, String source, FilterRegistry filters) {
+        if (source == null) {
+            throw new TemplateException("テンプレートコンテンツは null にできません: " + name);
+        }
+
+        Deque<Block> blocks = new ArrayDeque<>();
+        Block root = new Block(BlockType.ROOT, List.of());
+        blocks.push(root);
+        Set<String> partials = new LinkedHashSet<>();
+
+        StringBuilder text = new StringBuilder();
+        int position = 0;
+        int length = source.length();
+
+        while (position < length) {
+            int open = source.indexOf(TAG_OPEN, position);
+            if (open < 0) {
+                text.append(source, position, length);
+                break;
+            }
+
+            int close = source.indexOf('}', open + TAG_OPEN.length());
+            if (close < 0 || close == open + TAG_OPEN.length() || close + 1 >= length || source.charAt(close + 1) != '}') {
+                // タグとして成立しないため1文字進めて探索を続ける
+                text.append(source, position, open + 1);
+                position = open + 1;
+                continue;
+            }
+
+            text.append(source, position, open);
+            flushText(text, blocks.peek());
+
+            String tag = source.substring(open + TAG_OPEN.length(), close).trim();
+            handleTag(name, tag, blocks, partials, filters);
+            position = close + 2;
+        }
+
+        flushText(text, blocks.peek());
+
+        if (blocks.size() > 1) {
+            throw new TemplateException("閉じられていないブロックがあります: " + blocks.peek().type.label + " (" + name + ")");
+        }
+
+        return new CompiledTemplate(name, source, root.nodes(), List.copyOf(partials));
+    }
+
+    private static void handleTag(String name, String tag, Deque<Block> blocks, Set<String> partials,
+                                  FilterRegistry filters) {
+        if (isBlockTag(tag, "#if")) {
+            openBlock(name, blocks, new Block(BlockType.IF, parsePath(tag.substring(3).trim())));
+        } else if (tag.equals("else")) {
+            Block block = blocks.peek();
+            if (block.type == BlockType.ROOT || block.elseNodes != null) {
+                throw new TemplateException("対応する{{#if}}または{{#each}}がない{{else}}です (" + name + ")");
+            }
+            block.elseNodes = new ArrayList<>();
+        } else if (tag.equals("/if")) {
+            Block block = closeBlock(name, blocks, BlockType.IF);
+            blocks.peek().nodes().add(new TemplateNode.If(
+                block.path, block.thenNodes, block.elseNodes != null ? block.elseNodes : List.of()));
+        } else if (isBlockTag(tag, "#each")) {
+            openBlock(name, blocks, new Block(BlockType.EACH, parsePath(tag.substring(5).trim())));
+        } else if (tag.equals("/each")) {
+            Block block = closeBlock(name, blocks, BlockType.EACH);
+            blocks.peek().nodes().add(new TemplateNode.Each(
+                block.path, block.thenNodes, block.elseNodes != null ? block.elseNodes : List.of()));
+        } else if (tag.startsWith(">")) {
+            String partialName = tag.substring(1).trim();
+            partials.add(partialName);
+            blocks.peek().nodes().add(new TemplateNode.Partial(partialName));
+        } else {
+            blocks.peek().nodes().add(parseVariable(tag, filters));
+        }
+    }
+
+    private static boolean isBlockTag(String tag, String keyword) {
+        return tag.startsWith(keyword)
+            && tag.length() > keyword.length()
+            && Character.isWhitespace(tag.charAt(keyword.length()));
+    }
+
+    private static void openBlock(String name, Deque<Block> blocks, Block block) {
+        // ルートを除いたブロックの深さで判定する
+        if (blocks.size() > MAX_NESTING_DEPTH) {
+            throw new TemplateException("ネストが深すぎます (" + name + ")");
+        }
+        blocks.push(block);
+    }
+
+    private static Block closeBlock(String name, Deque<Block> blocks, BlockType expected) {
+        Block block = blocks.peek();
+        if (block.type != expected) {
+            throw new TemplateException("対応する{{" + expected.label + "}}がない{{/" + expected.label.substring(1)
+                + "}}です (" + name + ")");
+        }
+        return blocks.pop();
+    }
+
+    /**
+     * {@code path | filter:arg1,arg2 | filter2} を変数ノードに変換する。
+     * 区切り文字は引用符の外側にあるものだけを対象とする。
+     */
+    static TemplateNode.Variable parseVariable(String expression) {
+        return parseVariable(expression, FilterRegistry.global());
+    }
+
+    static TemplateNode.Variable parseVariable(String expression, FilterRegistry registry) {
+        List<String> segments = splitOutsideQuotes(expression, '|', -1);
+        List<TemplateNode.FilterCall> filters = new ArrayList<>();
+
+        for (int i = 1; i < segments.size(); i++) {
+            String segment = segments.get(i).trim();
+            List<String> nameAndArgs = splitOutsideQuotes(segment, ':', 2);
+            String filterName = nameAndArgs.get(0).trim();
+
+            List<String> arguments = new ArrayList<>();
+            if (nameAndArgs.size() > 1) {
+                for (String argument : splitOutsideQuotes(nameAndArgs.get(1), ',', -1)) {
+                    arguments.add(unquote(argument.trim()));
+                }
+            }
+            filters.add(new TemplateNode.FilterCall(filterName, arguments));
+        }
+
+        return new TemplateNode.Variable(expression, parsePath(segments.get(0).trim()), filters,
+            FilterChain.bind(filters, registry));
+    }
+
+    private static List<String> parsePath(String path) {
+        return Arrays.asList(path.split("\\."));
+    }
+
+    static List<String> splitOutsideQuotes(String input, char delimiter, int limit) {
+        List<String> parts = new ArrayList<>();
+        char quote = 0;
+        int start = 0;
+
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == delimiter && (limit < 0 || parts.size() < limit - 1)) {
+                parts.add(input.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        parts.add(input.substring(start));
+        return parts;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2) {
+            char first = value.charAt(0);
+            if ((first == '\'' || first == '"') && value.charAt(value.length() - 1) == first) {
+                return value.substring(1, value.length() - 1);
+            }
+        }
+        return value;
+    }
+
+    private static void flushText(StringBuilder text, Block block) {
+        if (!text.isEmpty()) {
+            block.nodes().add(new TemplateNode.Text(text.toString()));
+            text.setLength(0);
+        }
+    }
+
+    private enum BlockType {
+        ROOT(""), IF("#if"), EACH("#each");
+
+        private final String label;
+
+        BlockType(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * 解析中のブロック。else節が始まると以降のノードはelseNodesに追加される。
+     */
+    private static final class Block {
+        private final BlockType type;
+        private final List<String> path;
+        private final List<TemplateNode> thenNodes = new ArrayList<>();
+        private List<TemplateNode> elseNodes;
+
+        private Block(BlockType type, List<String> path) {
+            this.type = type;
+            this.path = path;
+        }
+
+        private List<TemplateNode> nodes() {
+            return elseNodes != null ? elseNodes : thenNodes;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.javassg.template;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * テンプレートのフィルター（{@code {{ value | name:arg1,arg2 }}}）
+ *
+ * {@link #bind(List)} はテンプレートのコンパイル時に呼び出し箇所ごとに1度だけ呼ばれる。
+ * 書式やパターンなど引数から作れる状態はここで用意し、返した関数をレンダリングのたびに使う。
+ * 返す関数は複数のスレッドから同時に呼ばれる。
+ */
+@FunctionalInterface
+public interface TemplateFilter {
+
+    Function<Object, Object> bind(List<String> arguments);
+
+    /**
+     * 引数を使わないフィルターを作る
+     */
+    static TemplateFilter of(Function<Object, Object> function) {
+        return arguments -> function;
+    }
+}
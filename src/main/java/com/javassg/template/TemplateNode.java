@@ -0,0 +1,66 @@
+package com.javassg.template;
+
+import java.util.List;
+
+/**
+ * コンパイル済みテンプレートを構成するノード
+ *
+ * {@link TemplateCompiler}がテンプレート文字列を一度だけ解析して生成する不変の木構造で、
+ * レンダリング時はこの木を辿るだけで済む。
+ */
+public sealed interface TemplateNode {
+
+    /**
+     * そのまま出力される文字列
+     */
+    record Text(String text) implements TemplateNode {}
+
+    /**
+     * {@code {{ path | filter:arg }}} 形式の変数参照とフィルターチェーン
+     * （{@code chain} はコンパイル時に引数を束縛したフィルター）
+     */
+    record Variable(String expression, List<String> path, List<FilterCall> filters, FilterChain chain)
+        implements TemplateNode {
+        public Variable {
+            path = List.copyOf(path);
+            filters = List.copyOf(filters);
+        }
+    }
+
+    /**
+     * {@code {{#if cond}}...{{else}}...{{/if}}}
+     */
+    record If(List<String> condition, List<TemplateNode> thenNodes, List<TemplateNode> elseNodes)
+        implements TemplateNode {
+        public If {
+            condition = List.copyOf(condition);
+            thenNodes = List.copyOf(thenNodes);
+            elseNodes = List.copyOf(elseNodes);
+        }
+    }
+
+    /**
+     * {@code {{#each items}}...{{else}}...{{/each}}}（else節は要素が無い場合に出力される）
+     */
+    record Each(List<String> path, List<TemplateNode> body, List<TemplateNode> elseNodes) implements TemplateNode {
+        public Each {
+            path = List.copyOf(path);
+            body = List.copyOf(body);
+            elseNodes = List.copyOf(elseNodes);
+        }
+    }
+
+    /**
+     * {@code {{> name}}} によるパーシャル参照
+     */
+    record Partial(String name) implements TemplateNode {}
+
+    /**
+     * フィルターチェーンを構成する1つのフィルター呼び出し
+     */
+    record FilterCall(String name, List<String> arguments) {
+        public FilterCall {
+            arguments = List.copyOf(arguments);
+        }
+    }
+}
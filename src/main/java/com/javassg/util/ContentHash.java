@@ -0,0 +1,72 @@
+package com.javassg.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ファイル内容のハッシュ計算ユーティリティ
+ *
+ * ファイル全体をメモリに読み込まず、固定長バッファでストリーミングしながらSHA-256を計算する。
+ * 複数のハッシュや文字列を1つのフィンガープリントにまとめることもできる。
+ */
+public final class ContentHash {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentHash() {
+    }
+
+    public static String of(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static String of(byte[] content) {
+        return HexFormat.of().formatHex(newDigest().digest(content));
+    }
+
+    /**
+     * バッファの残りの内容のハッシュ。バッファの位置は変えない。
+     */
+    public static String of(ByteBuffer content) {
+        MessageDigest digest = newDigest();
+        digest.update(content.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 文字列の並びから1つのハッシュを作る（区切りを含めるため並びの境界が変われば別の値になる）
+     */
+    public static String combine(Iterable<String> parts) {
+        MessageDigest digest = newDigest();
+        for (String part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256アルゴリズムが利用できません", e);
+        }
+    }
+}
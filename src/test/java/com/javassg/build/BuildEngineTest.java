@@ -0,0 +1,588 @@
+package com.javassg.build;
+
+import com.javassg.cache.CacheManager;
+import com.javassg.model.*;
+import com.javassg.parser.MarkdownFile;
+import com.javassg.parser.MarkdownParser;
+import com.javassg.plugin.Plugin;
+import com.javassg.plugin.PluginContext;
+import com.javassg.plugin.PluginManager;
+import com.javassg.template.FilterRegistry;
+import com.javassg.template.TemplateFilter;
+import com.javassg.util.ContentHash;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("BuildEngine Tests")
+class BuildEngineTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path contentDir;
+    private Path templatesDir;
+    private Path staticDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        contentDir = Files.createDirectories(tempDir.resolve("content"));
+        templatesDir = Files.createDirectories(tempDir.resolve("templates"));
+        staticDir = Files.createDirectories(tempDir.resolve("static"));
+        Files.createDirectories(contentDir.resolve("posts"));
+
+        Files.writeString(templatesDir.resolve("page.html"), "<html><h1>{{page.title}}</h1>{{page.content}}</html>");
+        Files.writeString(templatesDir.resolve("post.html"), "<html><h1>{{post.title}}</h1>{{post.content}}</html>");
+        Files.writeString(templatesDir.resolve("index.html"), "<html>{{site.title}}</html>");
+        Files.writeString(templatesDir.resolve("archive.html"), "<html>archive</html>");
+        Files.writeString(templatesDir.resolve("category.html"), "<html>{{category}}</html>");
+    }
+
+    @Test
+    @DisplayName("並列解析でも全てのコンテンツが解析され出力が決定的であること")
+    void shouldParseContentInParallelDeterministically() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        for (int i = 0; i < 40; i++) {
+            Files.writeString(contentDir.resolve("posts").resolve("post-" + i + ".md"), String.format(
+                "---\ntitle: Post %d\ndate: 2024-01-%02dT10:00:00\ncategories: [news]\n---\n# Post %d", i, i % 28 + 1, i));
+        }
+
+        var parallel = new BuildEngine(siteConfig("parallel", 8), tempDir).build();
+        var sequential = new BuildEngine(siteConfig("sequential", 1), tempDir).build();
+
+        assertThat(parallel.success()).isTrue();
+        assertThat(parallel.totalPages()).isEqualTo(1);
+        assertThat(parallel.totalPosts()).isEqualTo(40);
+        assertThat(parallel.generatedFiles()).isEqualTo(sequential.generatedFiles());
+
+        for (String file : List.of("about.html", "post-7.html", "index.html", "category/news.html")) {
+            assertThat(tempDir.resolve("parallel").resolve(file))
+                .hasSameTextualContentAs(tempDir.resolve("sequential").resolve(file));
+        }
+    }
+
+    @Test
+    @DisplayName("解析に失敗したファイルはスキップされビルドが継続すること")
+    void shouldSkipFilesThatFailToParse() throws IOException {
+        Files.writeString(contentDir.resolve("posts").resolve("good.md"), "---\ntitle: Good\ndate: 2024-01-01T10:00:00\n---\nok");
+        Files.writeString(contentDir.resolve("posts").resolve("bad|name.md"), "---\ntitle: Bad\n---\nng");
+
+        var result = new BuildEngine(siteConfig("_site", 4), tempDir).build();
+
+        assertThat(result.success()).isTrue();
+        assertThat(result.totalPosts()).isEqualTo(1);
+        assertThat(tempDir.resolve("_site").resolve("good.html")).exists();
+    }
+
+    @Test
+    @DisplayName("本番ビルドではパイプラインで最小化されステージ時間が報告されること")
+    void shouldMinifyThroughPipelineAndReportStageTimings() throws IOException {
+        Files.writeString(templatesDir.resolve("page.html"), "<html>\n  <body>\n    {{page.content}}\n  </body>\n</html>");
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(contentDir.resolve("page-" + i + ".md"), "# Page " + i);
+        }
+
+        var result = new BuildEngine(siteConfig("_site", 4), tempDir).buildForProduction();
+
+        assertThat(result.success()).isTrue();
+        assertThat(result.generatedFiles()).isEqualTo(20);
+        assertThat(result.statistics().htmlStageTimings()).isNotNull();
+        assertThat(Files.readString(tempDir.resolve("_site").resolve("page-3.html")))
+            .isEqualTo("<html><body><h1>Page 3</h1></body></html>");
+    }
+
+    @Test
+    @DisplayName("増分ビルドでは内容が変わった入力だけが再生成されること")
+    void shouldRebuildOnlyChangedInputsIncrementally() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        Files.writeString(contentDir.resolve("contact.md"), "---\ntitle: Contact\n---\n# Contact");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        assertThat(engine.build().success()).isTrue();
+        assertThat(tempDir.resolve(".javassg-_site").resolve(BuildManifest.FILE_NAME)).exists();
+
+        var unchanged = engine.buildIncremental();
+        assertThat(unchanged.success()).isTrue();
+        assertThat(unchanged.modifiedFiles()).isZero();
+        assertThat(unchanged.generatedFiles()).isZero();
+
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About Us");
+        var changed = new BuildEngine(siteConfig("_site", 2), tempDir).buildIncremental();
+
+        assertThat(changed.success()).isTrue();
+        assertThat(changed.modifiedFiles()).isEqualTo(1);
+        assertThat(changed.generatedFiles()).isEqualTo(1);
+        assertThat(changed.totalPages()).isEqualTo(2);
+        assertThat(Files.readString(tempDir.resolve("_site").resolve("about.html"))).contains("About Us");
+    }
+
+    @Test
+    @DisplayName("更新時刻だけが変わった入力は内容ハッシュにより未変更とみなされること")
+    void shouldTreatTouchedButIdenticalFilesAsUnchanged() throws IOException {
+        Path about = contentDir.resolve("about.md");
+        Files.writeString(about, "# About");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        engine.build();
+
+        Files.setLastModifiedTime(about, java.nio.file.attribute.FileTime.fromMillis(
+            Files.getLastModifiedTime(about).toMillis() + 60_000));
+        var result = engine.buildIncremental();
+
+        assertThat(result.modifiedFiles()).isZero();
+        assertThat(result.generatedFiles()).isZero();
+    }
+
+    @Test
+    @DisplayName("フルビルドでは内容が変わらない出力を書き換えず、生成されなくなったファイルだけを削除すること")
+    void shouldKeepUnchangedOutputsAndRemoveStaleFilesOnFullBuild() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        Files.writeString(contentDir.resolve("contact.md"), "---\ntitle: Contact\n---\n# Contact");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        assertThat(engine.build().success()).isTrue();
+
+        Path site = tempDir.resolve("_site");
+        var past = java.nio.file.attribute.FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(site.resolve("about.html"), past);
+        Files.setLastModifiedTime(site.resolve("contact.html"), past);
+        Files.createDirectories(site.resolve("old"));
+        Files.writeString(site.resolve("old").resolve("stale.html"), "stale");
+
+        Files.writeString(contentDir.resolve("contact.md"), "---\ntitle: Contact\n---\n# Contact Us");
+        var result = engine.build();
+
+        assertThat(result.success()).isTrue();
+        assertThat(result.generatedFiles()).isEqualTo(2);
+        assertThat(Files.getLastModifiedTime(site.resolve("about.html"))).isEqualTo(past);
+        assertThat(Files.getLastModifiedTime(site.resolve("contact.html"))).isNotEqualTo(past);
+        assertThat(Files.readString(site.resolve("contact.html"))).contains("Contact Us");
+        assertThat(site.resolve("old")).doesNotExist();
+        assertThat(site.resolve("sitemap.xml")).exists();
+    }
+
+    @Test
+    @DisplayName("レンダリングが途中で失敗した場合は既存の出力を書きかけの内容で置き換えないこと")
+    void shouldKeepPreviousOutputWhenRenderingFails() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\nabout");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        assertThat(engine.build().success()).isTrue();
+        Path about = tempDir.resolve("_site").resolve("about.html");
+        byte[] previous = Files.readAllBytes(about);
+
+        // 出力の一部を書き込んだ後に、存在しないパーシャルの参照で失敗させる
+        Files.writeString(templatesDir.resolve("page.html"),
+            "<html><h1>{{page.title}}</h1>" + "changed ".repeat(4096) + "{{> missing}}</html>");
+
+        assertThat(engine.build().success()).isFalse();
+        assertThat(Files.readAllBytes(about)).isEqualTo(previous);
+        try (var files = Files.list(tempDir.resolve("_site"))) {
+            assertThat(files.map(file -> file.getFileName().toString())).noneMatch(name -> name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    @DisplayName("シンボリックリンクを経由した出力ディレクトリ内のキャッシュはフルビルドで削除されないこと")
+    void shouldKeepCacheInsideSymlinkedOutputOnFullBuild() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\nabout");
+        Path realSite = Files.createDirectories(tempDir.resolve("real-site"));
+        Path site = Files.createSymbolicLink(tempDir.resolve("_site"), realSite);
+        SiteConfig base = siteConfig("_site", 2);
+        BuildConfig build = base.build();
+        SiteConfig config = new SiteConfig(base.site(), new BuildConfig(
+            build.contentDirectory(), build.outputDirectory(), build.staticDirectory(), build.templatesDirectory(),
+            2, 2, site.resolve(".cache").toString(), true, false, false, false),
+            base.server(), base.blog(), base.limits(), base.plugins());
+
+        assertThat(new BuildEngine(config, tempDir).build().success()).isTrue();
+        assertThat(new BuildEngine(config, tempDir).build().success()).isTrue();
+
+        assertThat(site.resolve(".cache").resolve(BuildManifest.FILE_NAME)).exists();
+        assertThat(site.resolve(".cache").resolve("cache")).isDirectory();
+        assertThat(site.resolve("about.html")).exists();
+    }
+
+    @Test
+    @DisplayName("ステージングを有効にすると別ディレクトリに生成してから出力ディレクトリを入れ替え、変更の無いファイルは共有すること")
+    void shouldBuildIntoStagingDirectoryAndSwapOutput() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        Files.writeString(contentDir.resolve("contact.md"), "---\ntitle: Contact\n---\n# Contact");
+        Path site = tempDir.resolve("_site");
+
+        assertThat(new BuildEngine(siteConfig("_site", 2, false, true), tempDir).build().success()).isTrue();
+        assertThat(Files.isSymbolicLink(site)).isTrue();
+        assertThat(site.toRealPath()).isEqualTo(tempDir.resolve("._site.a").toRealPath());
+        Object aboutInode = Files.getAttribute(site.resolve("about.html"), "unix:ino");
+
+        Files.writeString(contentDir.resolve("contact.md"), "---\ntitle: Contact\n---\n# Contact Us");
+        var result = new BuildEngine(siteConfig("_site", 2, false, true), tempDir).build();
+
+        assertThat(result.success()).isTrue();
+        assertThat(site.toRealPath()).isEqualTo(tempDir.resolve("._site.b").toRealPath());
+        assertThat(tempDir.resolve("._site.a")).doesNotExist();
+        assertThat(Files.getAttribute(site.resolve("about.html"), "unix:ino")).isEqualTo(aboutInode);
+        assertThat(Files.readString(site.resolve("contact.html"))).contains("Contact Us");
+    }
+
+    @Test
+    @DisplayName("増分ビルドでは変更された静的ファイルだけをコピーし、削除されたファイルとディレクトリを出力から取り除くこと")
+    void shouldSyncOnlyChangedStaticFilesIncrementally() throws IOException {
+        Files.createDirectories(staticDir.resolve("css/vendor"));
+        Files.createDirectories(staticDir.resolve("img/old"));
+        Files.writeString(staticDir.resolve("css/site.css"), "body{}");
+        Files.writeString(staticDir.resolve("css/vendor/lib.css"), "a{}");
+        Files.writeString(staticDir.resolve("img/old/logo.svg"), "<svg/>");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        assertThat(engine.build().success()).isTrue();
+
+        Path site = tempDir.resolve("_site");
+        // 変更されていないファイルのコピー先は、増分ビルドで読み書きされない
+        Files.writeString(site.resolve("css/vendor/lib.css"), "untouched");
+        Files.writeString(staticDir.resolve("css/site.css"), "body{color:red}");
+        Files.delete(staticDir.resolve("img/old/logo.svg"));
+        Files.delete(staticDir.resolve("img/old"));
+
+        var result = engine.buildIncremental();
+
+        assertThat(result.success()).isTrue();
+        assertThat(result.statistics().staticFiles()).isEqualTo(2);
+        assertThat(site.resolve("css/site.css")).hasContent("body{color:red}");
+        assertThat(site.resolve("css/vendor/lib.css")).hasContent("untouched");
+        assertThat(site.resolve("img")).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("アセットにハッシュ付きの名前を付け、HTMLとCSSの参照を書き換え、変更時には古い名前を削除すること")
+    void shouldFingerprintAssetsAndRewriteReferences() throws IOException {
+        Files.createDirectories(staticDir.resolve("css"));
+        Files.createDirectories(staticDir.resolve("img"));
+        Files.writeString(staticDir.resolve("img/logo.png"), "png-v1");
+        Files.writeString(staticDir.resolve("css/site.css"), "@import 'base.css';\nh1{background:url(../img/logo.png)}");
+        Files.writeString(staticDir.resolve("css/base.css"), "body{margin:0}");
+        Files.writeString(staticDir.resolve("robots.txt"), "User-agent: *");
+        Files.writeString(templatesDir.resolve("page.html"),
+            "<html><link rel=\"stylesheet\" href=\"/css/site.css?v=1\"><img src='img/logo.png' alt=\"logo\">"
+            + "<a href=\"https://example.com/robots.txt\">{{page.title}}</a></html>");
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\nabout");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2, false, false, true), tempDir);
+
+        assertThat(engine.build().success()).isTrue();
+
+        Path site = tempDir.resolve("_site");
+        String logo = "img/logo." + ContentHash.of("png-v1".getBytes()).substring(0, 8) + ".png";
+        String base = "css/base." + ContentHash.of("body{margin:0}".getBytes()).substring(0, 8) + ".css";
+        assertThat(site.resolve(logo)).hasContent("png-v1");
+        assertThat(site.resolve("img/logo.png")).hasContent("png-v1");
+        String css = "@import '" + base.substring(4) + "';\nh1{background:url(../" + logo + ")}";
+        String siteCss = "css/site." + ContentHash.of(css.getBytes()).substring(0, 8) + ".css";
+        assertThat(site.resolve(siteCss)).hasContent(css);
+        assertThat(Files.readString(site.resolve("about.html")))
+            .contains("href=\"/" + siteCss + "?v=1\"", "src='" + logo + "'")
+            .contains("href=\"https://example.com/robots.txt\"");
+        assertThat(Files.readString(site.resolve("manifest.json")))
+            .contains("\"img/logo.png\":\"" + logo + "\"", "\"css/site.css\":\"" + siteCss + "\"");
+
+        // 参照先の画像が変わるとCSSの名前も変わり、古い名前のファイルは削除される
+        Files.writeString(staticDir.resolve("img/logo.png"), "png-v2");
+        assertThat(engine.buildIncremental().success()).isTrue();
+
+        String newLogo = "img/logo." + ContentHash.of("png-v2".getBytes()).substring(0, 8) + ".png";
+        assertThat(site.resolve(newLogo)).hasContent("png-v2");
+        assertThat(site.resolve(logo)).doesNotExist();
+        assertThat(site.resolve(siteCss)).doesNotExist();
+        assertThat(site.resolve(base)).exists();
+        assertThat(Files.readString(site.resolve("about.html"))).contains("src='" + newLogo + "'").doesNotContain(siteCss);
+
+        // フルビルドでもハッシュ付きのファイルは残る
+        assertThat(engine.build().success()).isTrue();
+        assertThat(site.resolve(newLogo)).exists();
+        assertThat(site.resolve(base)).exists();
+    }
+
+    @Test
+    @DisplayName("ソースが削除された出力は増分ビルドで削除されること")
+    void shouldDeleteOutputsOfRemovedSources() throws IOException {
+        Files.writeString(contentDir.resolve("posts").resolve("first.md"),
+            "---\ntitle: First\ndate: 2024-01-01T10:00:00\ncategories: [news]\n---\nfirst");
+        Files.writeString(contentDir.resolve("posts").resolve("second.md"),
+            "---\ntitle: Second\ndate: 2024-01-02T10:00:00\ncategories: [tech]\n---\nsecond");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        engine.build();
+        Path site = tempDir.resolve("_site");
+        assertThat(site.resolve("second.html")).exists();
+        assertThat(site.resolve("category").resolve("tech.html")).exists();
+
+        Files.delete(contentDir.resolve("posts").resolve("second.md"));
+        var result = engine.buildIncremental();
+
+        assertThat(result.success()).isTrue();
+        assertThat(result.modifiedFiles()).isEqualTo(1);
+        assertThat(result.totalPosts()).isEqualTo(1);
+        assertThat(site.resolve("second.html")).doesNotExist();
+        assertThat(site.resolve("category").resolve("tech.html")).doesNotExist();
+        assertThat(site.resolve("first.html")).exists();
+        assertThat(Files.readString(site.resolve("sitemap.xml"))).doesNotContain("second");
+    }
+
+    @Test
+    @DisplayName("投稿の変更では投稿と影響を受ける一覧ページだけが再生成されること")
+    void shouldRegenerateOnlyListingsAffectedByChangedPost() throws IOException {
+        Path posts = contentDir.resolve("posts");
+        Files.writeString(contentDir.resolve("about.md"), "# About");
+        Files.writeString(posts.resolve("first.md"),
+            "---\ntitle: First\ndate: 2024-01-01T10:00:00\ncategories: [news]\n---\nfirst");
+        Files.writeString(posts.resolve("second.md"),
+            "---\ntitle: Second\ndate: 2024-01-02T10:00:00\ncategories: [tech]\n---\nsecond");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        engine.build();
+
+        Files.writeString(posts.resolve("first.md"),
+            "---\ntitle: First Updated\ndate: 2024-01-01T10:00:00\ncategories: [news]\n---\nfirst");
+        var result = engine.buildIncremental();
+
+        // first.html, index.html, archive.html, category/news.html
+        assertThat(result.generatedFiles()).isEqualTo(4);
+        assertThat(Files.readString(tempDir.resolve("_site").resolve("first.html"))).contains("First Updated");
+    }
+
+    @Test
+    @DisplayName("投稿のカテゴリ変更では旧カテゴリと新カテゴリの両方が再生成されること")
+    void shouldRegenerateOldAndNewCategoryWhenCategoryChanges() throws IOException {
+        Path posts = contentDir.resolve("posts");
+        Files.writeString(posts.resolve("first.md"),
+            "---\ntitle: First\ndate: 2024-01-01T10:00:00\ncategories: [news]\n---\nfirst");
+        Files.writeString(posts.resolve("second.md"),
+            "---\ntitle: Second\ndate: 2024-01-02T10:00:00\ncategories: [news]\n---\nsecond");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        engine.build();
+
+        Files.writeString(posts.resolve("second.md"),
+            "---\ntitle: Second\ndate: 2024-01-02T10:00:00\ncategories: [tech]\n---\nsecond");
+        var result = engine.buildIncremental();
+
+        // second.html, index.html, archive.html, category/news.html, category/tech.html
+        assertThat(result.generatedFiles()).isEqualTo(5);
+        Path category = tempDir.resolve("_site").resolve("category");
+        assertThat(category.resolve("news.html")).exists();
+        assertThat(Files.readString(category.resolve("tech.html"))).isEqualTo("<html>tech</html>");
+    }
+
+    @Test
+    @DisplayName("パーシャルの変更ではそれを参照するテンプレートの出力だけが再生成されること")
+    void shouldRegenerateOutputsOfTemplatesIncludingChangedPartial() throws IOException {
+        Files.writeString(templatesDir.resolve("header.html"), "<header>v1</header>");
+        Files.writeString(templatesDir.resolve("page.html"), "<html>{{> header}}{{page.content}}</html>");
+        Files.writeString(contentDir.resolve("about.md"), "# About");
+        Files.writeString(contentDir.resolve("contact.md"), "# Contact");
+        Files.writeString(contentDir.resolve("posts").resolve("first.md"),
+            "---\ntitle: First\ndate: 2024-01-01T10:00:00\n---\nfirst");
+        BuildEngine engine = new BuildEngine(siteConfig("_site", 2), tempDir);
+        engine.build();
+        Path about = tempDir.resolve("_site").resolve("about.html");
+        assertThat(Files.readString(about)).contains("<header>v1</header>");
+
+        Files.writeString(templatesDir.resolve("header.html"), "<header>v2</header>");
+        var result = engine.buildIncremental();
+
+        assertThat(result.modifiedFiles()).isEqualTo(1);
+        assertThat(result.generatedFiles()).isEqualTo(2);
+        assertThat(Files.readString(about)).contains("<header>v2</header>");
+    }
+
+    @Test
+    @DisplayName("内容とテンプレートが変わらない出力はレンダリングキャッシュから書き出されること")
+    void shouldReuseRenderedOutputFromCache() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        SiteConfig config = siteConfig("_site", 2);
+        CacheManager cacheManager = new CacheManager();
+        BuildEngine engine = new BuildEngine(config, cacheManager, new MarkdownParser(), new StaticFileProcessor(),
+            new HtmlGenerator(config, cacheManager));
+        engine.build();
+        Path about = tempDir.resolve("_site").resolve("about.html");
+        String firstOutput = Files.readString(about);
+
+        Files.delete(about);
+        engine.buildIncremental();
+
+        assertThat(cacheManager.getStatistics().renderHits()).isEqualTo(1);
+        assertThat(Files.readString(about)).isEqualTo(firstOutput);
+
+        Files.writeString(templatesDir.resolve("page.html"), "<main>{{page.content}}</main>");
+        engine.buildIncremental();
+
+        assertThat(cacheManager.getStatistics().renderHits()).isEqualTo(1);
+        assertThat(Files.readString(about)).startsWith("<main><h1>About</h1>");
+    }
+
+    @Test
+    @DisplayName("ディスクキャッシュが有効な場合、別プロセスの変更の無いビルドは解析もレンダリングも行わないこと")
+    void shouldReuseParsedContentAndRendersFromDiskCache() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        Files.writeString(contentDir.resolve("posts").resolve("hello.md"),
+            "---\ntitle: Hello\ndate: 2024-01-02T10:00:00\ncategories: [news]\n---\n# Hello");
+        SiteConfig config = siteConfig("_site", 2, true);
+        Path output = tempDir.resolve("_site");
+
+        List<Path> coldParsed = new java.util.concurrent.CopyOnWriteArrayList<>();
+        CacheManager coldCache = new CacheManager();
+        new BuildEngine(config, coldCache, countingParser(coldParsed), new StaticFileProcessor(),
+            new HtmlGenerator(config, coldCache)).build();
+        coldCache.closePersistence();
+        // キャッシュが無い最初のビルドでは解析が記録される（計数が機能していることの確認）
+        assertThat(coldParsed).hasSize(2);
+        String firstPost = Files.readString(output.resolve("hello.html"));
+
+        // CIのように出力を消し、キャッシュディレクトリだけを残して新しいプロセスでビルドする
+        for (String file : List.of("about.html", "hello.html", "index.html", "archive.html")) {
+            Files.delete(output.resolve(file));
+        }
+        List<Path> parsed = new java.util.concurrent.CopyOnWriteArrayList<>();
+        CacheManager warmCache = new CacheManager();
+        var result = new BuildEngine(config, warmCache, countingParser(parsed), new StaticFileProcessor(),
+            new HtmlGenerator(config, warmCache)).build();
+        var diskStats = warmCache.getPersistenceStatistics().orElseThrow();
+        warmCache.closePersistence();
+
+        assertThat(result.success()).isTrue();
+        assertThat(parsed).isEmpty();
+        // 解析結果2件とHTML5件（ページ・投稿・インデックス・アーカイブ・カテゴリ）
+        assertThat(diskStats.hitCount()).isEqualTo(7);
+        assertThat(diskStats.missCount()).isZero();
+        assertThat(Files.readString(output.resolve("hello.html"))).isEqualTo(firstPost);
+    }
+
+    @Test
+    @DisplayName("レンダリングキャッシュのバージョンは並列度や保存先ではなく出力に影響する設定だけで決まること")
+    void shouldDeriveRenderCacheVersionFromOutputAffectingSettingsOnly() {
+        SiteConfig config = siteConfig("_site", 2);
+        SiteConfig otherMachine = siteConfig("other", 16, true, true);
+        SiteConfig retitled = new SiteConfig(
+            new SiteInfo("Renamed", "Test", "https://example.com", "ja-JP", new Author("Tester", "test@example.com")),
+            config.build(), config.server(), config.blog(), config.limits(), config.plugins());
+
+        assertThat(HtmlGenerator.renderingConfigVersion(otherMachine))
+            .isEqualTo(HtmlGenerator.renderingConfigVersion(config));
+        assertThat(HtmlGenerator.renderingConfigVersion(retitled))
+            .isNotEqualTo(HtmlGenerator.renderingConfigVersion(config));
+        assertThat(HtmlGenerator.renderingConfigVersion(siteConfig("_site", 2, false, false, true)))
+            .isNotEqualTo(HtmlGenerator.renderingConfigVersion(config));
+    }
+
+    @Test
+    @DisplayName("有効なプラグインが登録したテンプレートフィルターがビルドで適用されること")
+    void shouldApplyTemplateFiltersRegisteredByPlugins() throws IOException {
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        Files.writeString(templatesDir.resolve("page.html"), "<html><h1>{{page.title | shout}}</h1></html>");
+        SiteConfig base = siteConfig("_site", 2);
+        SiteConfig config = new SiteConfig(base.site(), base.build(), base.server(), base.blog(), base.limits(),
+            List.of(new PluginConfig("shout", true, Map.of())));
+
+        var result = new BuildEngine(config, tempDir, new PluginManager(config, List.of(new ShoutPlugin()))).build();
+
+        assertThat(result.success()).isTrue();
+        assertThat(tempDir.resolve("_site").resolve("about.html")).content().contains("<h1>About!</h1>");
+    }
+
+    /**
+     * ビルドが使う経路（{@link MarkdownParser#parsePages}・{@link MarkdownParser#parsePosts}）での解析を記録するパーサー
+     */
+    private static MarkdownParser countingParser(List<Path> parsed) {
+        return new MarkdownParser() {
+            @Override
+            public Page parsePage(MarkdownFile file) {
+                parsed.add(file.path());
+                return super.parsePage(file);
+            }
+
+            @Override
+            public Post parsePost(MarkdownFile file) {
+                parsed.add(file.path());
+                return super.parsePost(file);
+            }
+        };
+    }
+
+    /**
+     * 値の末尾に「!」を付ける{@code shout}フィルターを登録するプラグイン
+     */
+    private static final class ShoutPlugin implements Plugin {
+        @Override
+        public String getName() {
+            return "shout";
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0.0";
+        }
+
+        @Override
+        public String getDescription() {
+            return "テスト用";
+        }
+
+        @Override
+        public void initialize(SiteConfig config, Map<String, Object> settings) {
+        }
+
+        @Override
+        public void execute(PluginContext context) {
+        }
+
+        @Override
+        public void cleanup() {
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void registerFilters(FilterRegistry registry) {
+            registry.register("shout", TemplateFilter.of(value -> value + "!"));
+        }
+    }
+
+    private SiteConfig siteConfig(String outputDir, int parallelism) {
+        return siteConfig(outputDir, parallelism, false);
+    }
+
+    private SiteConfig siteConfig(String outputDir, int parallelism, boolean persistentCache) {
+        return siteConfig(outputDir, parallelism, persistentCache, false);
+    }
+
+    private SiteConfig siteConfig(String outputDir, int parallelism, boolean persistentCache, boolean stagedOutput) {
+        return siteConfig(outputDir, parallelism, persistentCache, stagedOutput, false);
+    }
+
+    private SiteConfig siteConfig(String outputDir, int parallelism, boolean persistentCache, boolean stagedOutput,
+                                  boolean fingerprintAssets) {
+        return new SiteConfig(
+            new SiteInfo("Test Site", "Test", "https://example.com", "ja-JP", new Author("Tester", "test@example.com")),
+            new BuildConfig(
+                contentDir.toString(),
+                tempDir.resolve(outputDir).toString(),
+                staticDir.toString(),
+                templatesDir.toString(),
+                parallelism,
+                parallelism,
+                tempDir.resolve(".javassg-" + outputDir).toString(),
+                persistentCache,
+                stagedOutput,
+                false,
+                fingerprintAssets
+            ),
+            new ServerConfig(8080, false),
+            new BlogConfig(10, true, true, true),
+            SecurityLimits.defaultLimits(),
+            List.of()
+        );
+    }
+}
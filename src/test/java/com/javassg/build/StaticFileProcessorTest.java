@@ -0,0 +1,119 @@
+package com.javassg.build;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("StaticFileProcessor Tests")
+class StaticFileProcessorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("並列にコピーし、サイズと更新時刻が一致するファイルは再コピーしないこと")
+    void shouldCopyInParallelAndSkipUpToDateFiles() throws IOException {
+        Path source = tempDir.resolve("static");
+        Path output = tempDir.resolve("_site");
+        for (int i = 0; i < 20; i++) {
+            Path dir = Files.createDirectories(source.resolve("img").resolve("set-" + (i % 4)));
+            Files.writeString(dir.resolve("image-" + i + ".png"), "png-" + i);
+        }
+        Files.writeString(source.resolve("style.css"), "body{}");
+        Files.writeString(source.resolve(".hidden"), "secret");
+
+        var processor = new StaticFileProcessor(4, false);
+        var first = processor.processStaticFiles(source, output);
+
+        assertThat(first.totalFiles()).isEqualTo(22);
+        assertThat(first.processedFiles()).isEqualTo(21);
+        assertThat(first.skippedFiles()).isEqualTo(1);
+        assertThat(output.resolve("img/set-3/image-7.png")).hasContent("png-7");
+        assertThat(output.resolve(".hidden")).doesNotExist();
+
+        // サイズと更新時刻が同じなら内容は比較せずにそのまま残す
+        Path css = output.resolve("style.css");
+        var mtime = Files.getLastModifiedTime(css);
+        Files.writeString(css, "BODY{}");
+        Files.setLastModifiedTime(css, mtime);
+        Files.writeString(source.resolve("img/set-0/image-0.png"), "changed png");
+
+        var second = processor.processStaticFiles(source, output);
+
+        assertThat(second.processedFiles()).isEqualTo(21);
+        assertThat(css).hasContent("BODY{}");
+        assertThat(output.resolve("img/set-0/image-0.png")).hasContent("changed png");
+    }
+
+    @Test
+    @DisplayName("ハードリンクを有効にするとソースとファイルを共有し、無効にすると独立したコピーに戻すこと")
+    void shouldHardLinkFilesWhenEnabled() throws IOException {
+        Path source = Files.createDirectories(tempDir.resolve("static"));
+        Path output = tempDir.resolve("_site");
+        Files.writeString(source.resolve("app.js"), "console.log(1);");
+
+        new StaticFileProcessor(2, true).processStaticFiles(source, output);
+
+        assertThat(fileKey(output.resolve("app.js"))).isEqualTo(fileKey(source.resolve("app.js")));
+
+        new StaticFileProcessor(2, false).processStaticFiles(source, output);
+
+        assertThat(fileKey(output.resolve("app.js"))).isNotEqualTo(fileKey(source.resolve("app.js")));
+        assertThat(output.resolve("app.js")).hasContent("console.log(1);");
+    }
+
+    @Test
+    @DisplayName("監視中はサブディレクトリの作成・変更・削除が出力に反映されること")
+    void shouldPropagateNestedChangesAndDeletionsWhileWatching() throws Exception {
+        Path source = Files.createDirectories(tempDir.resolve("static/css"));
+        Path output = tempDir.resolve("_site");
+        Files.writeString(source.resolve("site.css"), "body{}");
+        var processor = new StaticFileProcessor(2, false);
+        processor.processStaticFiles(tempDir.resolve("static"), output);
+
+        processor.startWatching(tempDir.resolve("static"), output);
+        try {
+            Files.writeString(source.resolve("site.css"), "body{color:red}");
+            Path fonts = Files.createDirectories(tempDir.resolve("static/fonts/latin"));
+            Files.writeString(fonts.resolve("sans.woff2"), "woff2");
+
+            awaitCondition(() -> Files.exists(output.resolve("fonts/latin/sans.woff2"))
+                && readQuietly(output.resolve("css/site.css")).equals("body{color:red}"));
+
+            Files.delete(fonts.resolve("sans.woff2"));
+            Files.delete(fonts);
+            Files.delete(source.resolve("site.css"));
+
+            awaitCondition(() -> Files.notExists(output.resolve("fonts")) && Files.notExists(output.resolve("css")));
+        } finally {
+            processor.stopWatching();
+        }
+    }
+
+    private static void awaitCondition(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("監視による反映を待機").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    private static String readQuietly(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static Object fileKey(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+}
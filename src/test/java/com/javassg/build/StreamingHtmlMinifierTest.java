@@ -0,0 +1,56 @@
+package com.javassg.build;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("StreamingHtmlMinifier Tests")
+class StreamingHtmlMinifierTest {
+
+    @Test
+    @DisplayName("従来の正規表現による最小化と同じ結果になること")
+    void shouldMatchRegexMinification() throws IOException {
+        List<String> inputs = List.of(
+            "<html>\n  <body>\n    <h1>Title</h1>\n  </body>\n</html>",
+            "  <p>a  b\tc</p>   <p>d</p>  ",
+            "<p>text <!-- note --> more</p><!-- x --><div> </div>",
+            "a < b && c > d <!- not a comment",
+            "<pre>line1\nline2</pre>\n\n<span>x</span> <em>y</em>"
+        );
+
+        for (String input : inputs) {
+            assertThat(minifyStreaming(input, 1)).as(input).isEqualTo(regexMinify(input));
+            assertThat(minifyStreaming(input, 3)).as(input).isEqualTo(regexMinify(input));
+        }
+    }
+
+    @Test
+    @DisplayName("複数行にわたるコメントも除去されること")
+    void shouldRemoveMultiLineComments() throws IOException {
+        assertThat(minifyStreaming("<p>a</p>\n<!--\n  comment -- here\n--->\n<p>b</p>", 2))
+            .isEqualTo("<p>a</p><p>b</p>");
+    }
+
+    private String minifyStreaming(String html, int chunkSize) throws IOException {
+        StringBuilder out = new StringBuilder();
+        StreamingHtmlMinifier minifier = new StreamingHtmlMinifier(out);
+        for (int i = 0; i < html.length(); i += chunkSize) {
+            minifier.append(html, i, Math.min(html.length(), i + chunkSize));
+        }
+        minifier.finish();
+        return out.toString();
+    }
+
+    private String regexMinify(String html) {
+        return html
+            .replaceAll("<!--.*?-->", "")
+            .replaceAll("\\s*\\n\\s*", "")
+            .replaceAll("\\s{2,}", " ")
+            .replaceAll(">\\s+<", "><")
+            .trim();
+    }
+}
@@ -7,9 +7,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -98,6 +100,53 @@ class CacheManagerTest {
         assertThat(cacheManager.getRendered("page:test2")).isEmpty();
     }
 
+    @Test
+    void shouldInvalidateTemplatesIncludingPartialTransitively() {
+        cacheManager.cacheTemplate("header", new Template("header", "<header>{{> nav}}</header>"));
+        cacheManager.cacheTemplate("nav", new Template("nav", "<nav></nav>"));
+        cacheManager.cacheTemplate("page", new Template("page", "{{> header}}{{ content }}"));
+        cacheManager.cacheTemplate("post", new Template("post", "{{ content }}"));
+        cacheManager.addTemplateDependency("header", "nav");
+        cacheManager.addTemplateDependency("page", "header");
+
+        cacheManager.invalidateTemplateAndDependents("nav");
+
+        assertThat(cacheManager.getTemplate("nav")).isEmpty();
+        assertThat(cacheManager.getTemplate("header")).isEmpty();
+        assertThat(cacheManager.getTemplate("page")).isEmpty();
+        assertThat(cacheManager.getCompiledTemplate("post")).isPresent();
+    }
+
+    @Test
+    void shouldInvalidateOnlyRendersTaggedWithChangedContentOrTemplate() {
+        cacheManager.cacheTemplate("header", new Template("header", "<header></header>"));
+        cacheManager.cacheTemplate("post", new Template("post", "{{> header}}{{ content }}"));
+        cacheManager.cacheTemplate("page", new Template("page", "{{ content }}"));
+        cacheManager.addTemplateDependency("post", "header");
+
+        LocalDateTime now = LocalDateTime.now();
+        cacheManager.cacheRendered("posts/a.html@1", "<p>a</p>", now,
+            Set.of(CacheManager.contentTag("a"), CacheManager.templateTag("post"), CacheManager.templateTag("header")));
+        cacheManager.cacheRendered("posts/b.html@1", "<p>b</p>", now,
+            Set.of(CacheManager.contentTag("b"), CacheManager.templateTag("post"), CacheManager.templateTag("header")));
+        cacheManager.cacheRendered("index.html@1", "<ul>a b</ul>", now,
+            Set.of(CacheManager.contentTag("a"), CacheManager.contentTag("b"), CacheManager.templateTag("index")));
+        cacheManager.cacheRendered("about.html@1", "<p>about</p>", now,
+            Set.of(CacheManager.contentTag("about"), CacheManager.templateTag("page")));
+
+        cacheManager.invalidateContentAndRelated("a");
+
+        assertThat(cacheManager.getRendered("posts/a.html@1")).isEmpty();
+        assertThat(cacheManager.getRendered("index.html@1")).isEmpty();
+        assertThat(cacheManager.getRendered("posts/b.html@1")).contains("<p>b</p>");
+        assertThat(cacheManager.getRendered("about.html@1")).contains("<p>about</p>");
+
+        cacheManager.invalidateTemplateAndDependents("header");
+
+        assertThat(cacheManager.getRendered("posts/b.html@1")).isEmpty();
+        assertThat(cacheManager.getRendered("about.html@1")).contains("<p>about</p>");
+    }
+
     @Test
     void shouldProvideGlobalCacheStatistics() {
         var page = Page.builder()
@@ -171,4 +220,30 @@ class CacheManagerTest {
         var stats = cacheManager.getStatistics();
         assertThat(stats).isNotNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldPreloadTemplatesAndContentOnWarmUp() throws Exception {
+        Path contentDir = Files.createDirectories(tempDir.resolve("content"));
+        Path templatesDir = Files.createDirectories(tempDir.resolve("templates"));
+        Files.createDirectories(contentDir.resolve("posts"));
+        Files.writeString(templatesDir.resolve("header.html"), "<header></header>");
+        Files.writeString(templatesDir.resolve("page.html"), "{{> header}}{{page.content}}");
+        Files.writeString(contentDir.resolve("about.md"), "---\ntitle: About\n---\n# About");
+        Files.writeString(contentDir.resolve("posts").resolve("hello.md"), "---\ntitle: Hello\n---\n# Hello");
+
+        var result = cacheManager.warmUp(contentDir, templatesDir);
+
+        assertThat(result.templates()).isEqualTo(2);
+        assertThat(result.pages()).isEqualTo(1);
+        assertThat(result.posts()).isEqualTo(1);
+        assertThat(result.failures()).isZero();
+        assertThat(cacheManager.getCompiledTemplate("page")).isPresent();
+        assertThat(cacheManager.getPage("about")).hasValueSatisfying(page -> assertThat(page.title()).isEqualTo("About"));
+        assertThat(cacheManager.getPost("hello")).isPresent();
+        assertThat(cacheManager.getPage("hello")).isEmpty();
+
+        // パーシャルの依存も登録されている
+        cacheManager.invalidateTemplateAndDependents("header");
+        assertThat(cacheManager.getCompiledTemplate("page")).isEmpty();
+    }
+}
@@ -0,0 +1,67 @@
+package com.javassg.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("DiskCache Tests")
+class DiskCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("書き戻した値を開き直した後も読み込めること")
+    void shouldPersistValuesAcrossReopen() throws IOException {
+        try (DiskCache cache = DiskCache.open(tempDir)) {
+            cache.put("page:about.md:abc", bytes("<h1>About</h1>"));
+            cache.put("render:index.html@1", bytes("<ul></ul>"));
+            cache.put("render:index.html@1", bytes("<ul><li>a</li></ul>"));
+        }
+
+        try (DiskCache cache = DiskCache.open(tempDir)) {
+            assertThat(cache.get("page:about.md:abc")).hasValueSatisfying(v -> assertThat(text(v)).isEqualTo("<h1>About</h1>"));
+            assertThat(cache.get("render:index.html@1")).hasValueSatisfying(v -> assertThat(text(v)).isEqualTo("<ul><li>a</li></ul>"));
+            assertThat(cache.get("page:about.md:other")).isEmpty();
+
+            var stats = cache.getStatistics();
+            assertThat(stats.entries()).isEqualTo(2);
+            assertThat(stats.hitCount()).isEqualTo(2);
+            assertThat(stats.missCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("書き戻していない値やインデックスが壊れている場合は空のキャッシュとして開くこと")
+    void shouldStartEmptyWhenIndexIsMissingOrCorrupt() throws IOException {
+        DiskCache unflushed = DiskCache.open(tempDir);
+        unflushed.put("render:a", bytes("a"));
+        assertThat(unflushed.get("render:a")).isPresent();
+
+        try (DiskCache cache = DiskCache.open(tempDir)) {
+            assertThat(cache.get("render:a")).isEmpty();
+            cache.put("render:b", bytes("b"));
+        }
+
+        Files.write(tempDir.resolve(DiskCache.INDEX_FILE), bytes("broken"));
+        try (DiskCache cache = DiskCache.open(tempDir)) {
+            assertThat(cache.get("render:b")).isEmpty();
+            assertThat(Files.size(tempDir.resolve(DiskCache.DATA_FILE))).isZero();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.javassg.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("RenderCache Tests")
+class RenderCacheTest {
+
+    private static final String KILOBYTE_HTML = "x".repeat(512);
+
+    @Test
+    @DisplayName("保持する結果の合計サイズが上限を超えないこと")
+    void shouldStayWithinWeightBudget() {
+        RenderCache cache = new RenderCache(32 * 1024);
+
+        for (int i = 0; i < 200; i++) {
+            cache.putRendered("page:" + i, KILOBYTE_HTML, LocalDateTime.now());
+        }
+
+        var stats = cache.getStatistics();
+        assertThat(stats.weightBytes()).isLessThanOrEqualTo(32 * 1024);
+        assertThat(stats.evictionCount()).isEqualTo(200 - stats.totalEntries());
+        assertThat(stats.totalEntries()).isBetween(1, 31);
+    }
+
+    @Test
+    @DisplayName("頻繁に参照される結果は一度きりの結果が大量に入っても残ること")
+    void shouldKeepFrequentlyUsedEntriesDuringScan() {
+        RenderCache cache = new RenderCache(32 * 1024);
+        cache.putRendered("index.html", KILOBYTE_HTML, LocalDateTime.now());
+        for (int i = 0; i < 10; i++) {
+            assertThat(cache.getRendered("index.html")).isPresent();
+        }
+
+        for (int i = 0; i < 500; i++) {
+            cache.putRendered("post:" + i, KILOBYTE_HTML, LocalDateTime.now());
+        }
+
+        assertThat(cache.getRendered("index.html")).contains(KILOBYTE_HTML);
+        assertThat(cache.getRendered("post:0")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("上限より大きい結果はキャッシュされず、統計に反映されること")
+    void shouldRejectOversizedEntriesAndReportMetrics() {
+        RenderCache cache = new RenderCache(4 * 1024);
+
+        cache.putRendered("huge", "x".repeat(4 * 1024), LocalDateTime.now());
+        cache.putRendered("small", "<p>ok</p>", LocalDateTime.now());
+
+        assertThat(cache.getRendered("huge")).isEmpty();
+        assertThat(cache.getRendered("small")).contains("<p>ok</p>");
+
+        var stats = cache.getStatistics();
+        assertThat(stats.totalEntries()).isEqualTo(1);
+        assertThat(stats.hitCount()).isEqualTo(1);
+        assertThat(stats.missCount()).isEqualTo(1);
+        assertThat(stats.maxWeightBytes()).isEqualTo(4 * 1024);
+    }
+
+    @Test
+    @DisplayName("タグで無効化すると、そのタグが付いたエントリだけが削除されること")
+    void shouldInvalidateEntriesByTag() {
+        RenderCache cache = new RenderCache();
+        LocalDateTime now = LocalDateTime.now();
+        cache.putRendered("index.html@1", "<ul></ul>", now, Set.of("collection:posts", "content:a"));
+        cache.putRendered("category/tech.html@1", "<ul></ul>", now, Set.of("collection:category:tech", "content:b"));
+        cache.putRendered("page:about", "<p>about</p>", now);
+
+        assertThat(cache.invalidateTag("collection:posts")).isEqualTo(1);
+        assertThat(cache.invalidateTag("collection:posts")).isZero();
+        assertThat(cache.invalidateTag("content:a")).isZero();
+
+        assertThat(cache.getRendered("index.html@1")).isEmpty();
+        assertThat(cache.getRendered("category/tech.html@1")).isPresent();
+
+        // タグを指定しない場合はキーの種類と名前から求める
+        assertThat(cache.invalidateTag("template:page")).isEqualTo(1);
+        assertThat(cache.getRendered("page:about")).isEmpty();
+        assertThat(cache.getStatistics().totalEntries()).isEqualTo(1);
+    }
+}
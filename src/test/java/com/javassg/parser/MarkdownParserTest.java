@@ -7,6 +7,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.BeforeEach;
 import java.time.LocalDateTime;
 import java.nio.file.Path;
+import java.util.List;
 import static org.assertj.core.api.Assertions.*;
 
 @DisplayName("MarkdownParser Tests")
@@ -345,6 +346,161 @@ class MarkdownParserTest {
             .hasMessageContaining("フロントマターのサイズが制限を超えています");
     }
 
+    @Test
+    @DisplayName("フロントマターの区切り以降だけが本文として扱われること")
+    void shouldSplitFrontMatterAndBodyInOnePass() {
+        var content = "---\r\ntitle: CRLF\r\n---\r\n\nIntro\n\n---\n\nAfter the rule\n";
+
+        var page = parser.parseContent("crlf.md", content);
+
+        assertThat(page.title()).isEqualTo("CRLF");
+        assertThat(page.rawContent()).isEqualTo("Intro\n\n---\n\nAfter the rule");
+        assertThat(page.renderedContent()).contains("<p>Intro</p>", "<hr />", "<p>After the rule</p>");
+        assertThat(page.renderedContent()).doesNotContain("title");
+    }
+
+    @Test
+    @DisplayName("閉じ区切りが無い場合はフロントマターとして扱わないこと")
+    void shouldTreatUnclosedFrontMatterAsBody() {
+        var page = parser.parseContent("unclosed.md", "---\ntitle: Open\n# Heading");
+
+        assertThat(page.frontMatter()).isEmpty();
+        assertThat(page.rawContent()).startsWith("---");
+        assertThat(page.renderedContent()).contains("<h1>Heading</h1>");
+    }
+
+    @Test
+    @DisplayName("1つのパーサーで複数のファイルを並列に解析でき、結果が入力順に返ること")
+    void shouldParseBatchConcurrentlyWithSharedParser() throws Exception {
+        Path dir = java.nio.file.Files.createTempDirectory("batch");
+        List<MarkdownFile> files = new java.util.ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Path file = dir.resolve("post-" + i + ".md");
+            java.nio.file.Files.writeString(file, String.format(
+                "---\ntitle: Post %d\ndate: 2024-01-%02dT10:00:00\ntags: [t%d]\n---\n# Post %d", i, i % 28 + 1, i, i));
+            files.add(MarkdownFile.stat(file));
+        }
+        files.add(new MarkdownFile(dir.resolve("missing.md"), 0, java.nio.file.attribute.FileTime.fromMillis(0)));
+
+        List<MarkdownParser.ParseResult<Post>> results;
+        try (var executor = java.util.concurrent.Executors.newFixedThreadPool(8)) {
+            results = parser.parsePosts(files, executor);
+        }
+
+        assertThat(results).hasSize(65);
+        for (int i = 0; i < 64; i++) {
+            var result = results.get(i);
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.file()).isEqualTo(files.get(i).path());
+            assertThat(result.value().title()).isEqualTo("Post " + i);
+            assertThat(result.value().tags()).containsExactly("t" + i);
+        }
+        assertThat(results.get(64).isSuccess()).isFalse();
+        assertThat(results.get(64).error()).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    @DisplayName("ファイルのBOMから文字コードを判別し、大きなファイルも読み込めること")
+    void shouldReadFilesByBomAndSize() throws Exception {
+        Path dir = java.nio.file.Files.createTempDirectory("reader");
+        Path utf8 = dir.resolve("utf8.md");
+        java.nio.file.Files.write(utf8, concat(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+            "---\ntitle: 日本語\n---\n# 見出し".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        Path utf16 = dir.resolve("utf16.md");
+        java.nio.file.Files.write(utf16, concat(new byte[] {(byte) 0xFF, (byte) 0xFE},
+            "---\ntitle: UTF-16\n---\n# Wide".getBytes(java.nio.charset.StandardCharsets.UTF_16LE)));
+        Path large = dir.resolve("large.md");
+        java.nio.file.Files.writeString(large, "---\ntitle: Large\n---\n" + "段落です。\n\n".repeat(200_000));
+
+        assertThat(parser.parseFile(utf8).title()).isEqualTo("日本語");
+        assertThat(parser.parseFile(utf16).title()).isEqualTo("UTF-16");
+        assertThat(parser.parseFile(utf16).renderedContent()).contains("<h1>Wide</h1>");
+        var largePage = parser.parseFile(MarkdownFile.stat(large));
+        assertThat(largePage.title()).isEqualTo("Large");
+        assertThat(largePage.rawContent()).endsWith("段落です。");
+    }
+
+    @Test
+    @DisplayName("走査時のサイズが制限を超えるファイルは内容を読まずにエラーになること")
+    void shouldRejectOversizedFileBeforeReading() {
+        var limits = new com.javassg.model.SecurityLimits(1024, 1024, 1024, 255, 200, 500);
+        var limitedParser = new MarkdownParser(limits);
+        // 存在しないパスでも、サイズの検証で先に失敗する
+        var file = new MarkdownFile(Path.of("not-read.md"), 4096, java.nio.file.attribute.FileTime.fromMillis(0));
+
+        assertThatThrownBy(() -> limitedParser.parseFile(file))
+            .hasRootCauseInstanceOf(IllegalArgumentException.class)
+            .rootCause().hasMessageContaining("ファイルサイズが制限を超えています");
+    }
+
+    @Test
+    @DisplayName("読み込んだ内容のハッシュはファイル全体のハッシュと一致し、読み直さずに解析できること")
+    void shouldHashTheBytesItReads() throws Exception {
+        var tempFile = java.nio.file.Files.createTempFile("hashed", ".md");
+        try {
+            byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+            java.nio.file.Files.write(tempFile, concat(bom, "---\ntitle: ハッシュ\n---\n本文".getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+
+            var source = parser.read(MarkdownFile.stat(tempFile));
+            java.nio.file.Files.delete(tempFile);
+            var page = parser.parsePage(source);
+
+            assertThat(source.contentHash()).isEqualTo(com.javassg.util.ContentHash.of(concat(bom,
+                "---\ntitle: ハッシュ\n---\n本文".getBytes(java.nio.charset.StandardCharsets.UTF_8))));
+            assertThat(page.title()).isEqualTo("ハッシュ");
+            assertThat(page.rawContent()).isEqualTo("本文");
+        } finally {
+            java.nio.file.Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Test
+    @DisplayName("本文のHTMLは最初に参照されたときに一度だけ描画されること")
+    void shouldRenderBodyLazilyOnFirstAccess() {
+        var content = """
+            ---
+            title: 下書き
+            published: false
+            ---
+            
+            # 見出し
+            """;
+
+        var post = Post.fromPage(parser.parseContent("draft.md", content));
+
+        assertThat(post.rendering().isRendered()).isFalse();
+        assertThat(post.rawContent()).isEqualTo("# 見出し");
+        assertThat(post.renderedContent()).contains("<h1>見出し</h1>");
+        assertThat(post.rendering().isRendered()).isTrue();
+        assertThat(post.renderedContent()).isSameAs(post.renderedContent());
+    }
+
+    @Test
+    @DisplayName("ページの比較やハッシュ表での使用では本文が描画されないこと")
+    void shouldCompareWithoutRenderingBody() {
+        var content = "---\ntitle: 比較\n---\n\n# 見出し\n";
+        var first = Post.fromPage(parser.parseContent("same.md", content));
+        var second = Post.fromPage(parser.parseContent("same.md", content));
+        var edited = Post.fromPage(parser.parseContent("same.md", content + "追記\n"));
+
+        assertThat(first.rendering()).isEqualTo(second.rendering()).hasSameHashCodeAs(second.rendering());
+        assertThat(first.rendering()).isNotEqualTo(edited.rendering());
+        assertThat(new java.util.HashSet<>(List.of(first.rendering(), second.rendering(), edited.rendering()))).hasSize(2);
+        assertThat(first.rendering().isRendered()).isFalse();
+        assertThat(second.rendering().isRendered()).isFalse();
+        assertThat(edited.rendering().isRendered()).isFalse();
+
+        // 描画した後も等価性は変わらない
+        assertThat(first.renderedContent()).contains("<h1>見出し</h1>");
+        assertThat(first.rendering()).isEqualTo(second.rendering());
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = java.util.Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
     private Path createTempMarkdownFile() {
         try {
             var tempFile = java.nio.file.Files.createTempFile("test", ".md");
@@ -23,7 +23,6 @@ import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -226,7 +225,7 @@ class DevServerTest {
         Thread.sleep(1000); // 待機時間を延長
         
         // BuildEngineが呼び出されることを確認
-        verify(buildEngine).buildIncremental(any());
+        verify(buildEngine).buildIncremental();
         
         devServer.stopWatching();
     }
@@ -0,0 +1,58 @@
+package com.javassg.template;
+
+import com.javassg.model.Post;
+import com.javassg.model.SiteConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PropertyResolver Tests")
+class PropertyResolverTest {
+
+    private final Post post = new Post(
+        "first-post.md",
+        "first-post",
+        Map.of("title", "First", "series", "intro"),
+        "# First",
+        "<h1>First</h1>",
+        LocalDateTime.of(2024, 1, 2, 10, 0),
+        LocalDateTime.of(2024, 1, 1, 10, 0),
+        List.of("tech"),
+        List.of()
+    );
+
+    @Test
+    @DisplayName("レコードのコンポーネントとメソッドをマップに変換せずに参照できること")
+    void shouldResolveRecordProperties() {
+        assertThat(PropertyResolver.resolve(post, "slug")).isEqualTo("first-post");
+        assertThat(PropertyResolver.resolve(post, "title")).isEqualTo("First");
+        assertThat(PropertyResolver.resolve(post, "content")).isEqualTo("<h1>First</h1>");
+        assertThat(PropertyResolver.resolve(post, "published")).isEqualTo(true);
+        assertThat(PropertyResolver.resolve(post, "categories")).isEqualTo(List.of("tech"));
+    }
+
+    @Test
+    @DisplayName("プロパティが無い場合はフロントマターを参照し、それも無ければMISSINGを返すこと")
+    void shouldFallBackToFrontMatter() {
+        assertThat(PropertyResolver.resolve(post, "series")).isEqualTo("intro");
+        assertThat(PropertyResolver.resolve(post, "unknown")).isSameAs(PropertyResolver.MISSING);
+        assertThat(PropertyResolver.resolve(Map.of("a", 1), "b")).isSameAs(PropertyResolver.MISSING);
+    }
+
+    @Test
+    @DisplayName("getterをプロパティ名で参照でき、テンプレートから辿れること")
+    void shouldResolveGettersThroughTemplates() {
+        SiteConfig site = SiteConfig.defaultConfig();
+        CompiledTemplate template = TemplateCompiler.compile("post",
+            "{{site.title}}|{{post.title}}|{{#each post.categories}}{{this}}{{/each}}|{{post.series}}");
+
+        assertThat(PropertyResolver.resolve(site, "url")).isEqualTo(site.getUrl());
+        assertThat(template.render(Map.of("site", site, "post", post)))
+            .isEqualTo(site.getTitle() + "|First|tech|intro");
+    }
+}
@@ -0,0 +1,227 @@
+package com.javassg.template;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("TemplateCompiler Tests")
+class TemplateCompilerTest {
+
+    @Test
+    @DisplayName("テキストと変数参照をノード木に変換してレンダリングできること")
+    void shouldCompileTextAndVariables() {
+        CompiledTemplate template = TemplateCompiler.compile("page",
+            "<h1>{{ page.title }}</h1><p>{{site.author.name}}</p>");
+
+        assertThat(template.nodes()).hasSize(5);
+        assertThat(template.render(Map.of(
+            "page", Map.of("title", "Hello"),
+            "site", Map.of("author", Map.of("name", "Tester"))
+        ))).isEqualTo("<h1>Hello</h1><p>Tester</p>");
+    }
+
+    @Test
+    @DisplayName("入れ子のif/elseを正しく評価できること")
+    void shouldEvaluateNestedConditionals() {
+        CompiledTemplate template = TemplateCompiler.compile("page",
+            "{{#if a}}A{{#if b}}B{{else}}notB{{/if}}{{else}}notA{{/if}}");
+
+        assertThat(template.render(Map.of("a", true, "b", false))).isEqualTo("AnotB");
+        assertThat(template.render(Map.of("a", true, "b", "yes"))).isEqualTo("AB");
+        assertThat(template.render(Map.of("a", List.of()))).isEqualTo("notA");
+    }
+
+    @Test
+    @DisplayName("eachの中でthisが処理中の要素を指すこと")
+    void shouldBindThisInsideEach() {
+        CompiledTemplate template = TemplateCompiler.compile("list",
+            "<ul>{{#each items}}<li>{{this}}</li>{{/each}}</ul>{{#each posts}}[{{this.title}}]{{/each}}");
+
+        String html = template.render(Map.of(
+            "items", List.of("a", "b"),
+            "posts", List.of(Map.of("title", "First"), Map.of("title", "Second"))
+        ));
+
+        assertThat(html).isEqualTo("<ul><li>a</li><li>b</li></ul>[First][Second]");
+    }
+
+    @Test
+    @DisplayName("ループ内の名前は要素から外側のスコープへ順に解決されること")
+    void shouldResolveNamesThroughScopeStack() {
+        CompiledTemplate template = TemplateCompiler.compile("archive",
+            "{{#each years}}<h2>{{year}}</h2>{{#each posts}}<a>{{title}}/{{year}}/{{site.title}}</a>{{/each}}{{/each}}");
+
+        String html = template.render(Map.of(
+            "site", Map.of("title", "Blog"),
+            "years", List.of(
+                Map.of("year", 2024, "posts", List.of(Map.of("title", "B"), Map.of("title", "A"))),
+                Map.of("year", 2023, "posts", List.of(Map.of("title", "C")))
+            )
+        ));
+
+        assertThat(html).isEqualTo(
+            "<h2>2024</h2><a>B/2024/Blog</a><a>A/2024/Blog</a><h2>2023</h2><a>C/2023/Blog</a>");
+    }
+
+    @Test
+    @DisplayName("@index・@first・@last・@keyでループの状態を参照できること")
+    void shouldExposeLoopMetadata() {
+        CompiledTemplate template = TemplateCompiler.compile("list",
+            "{{#each items}}{{#if @first}}[{{/if}}{{@index}}:{{this}}{{#if @last}}]{{else}},{{/if}}{{/each}}"
+                + "{{#each counts}}{{@key}}={{this}}{{/each}}");
+
+        String html = template.render(Map.of(
+            "items", List.of("a", "b", "c"),
+            "counts", new TreeMap<>(Map.of("x", 1, "y", 2))
+        ));
+
+        assertThat(html).isEqualTo("[0:a,1:b,2:c]x=1y=2");
+    }
+
+    @Test
+    @DisplayName("要素が無い場合はeachのelse節が出力されること")
+    void shouldRenderEachElseBranchForEmptyCollections() {
+        CompiledTemplate template = TemplateCompiler.compile("list",
+            "{{#each posts}}{{title}}{{else}}記事はありません{{/each}}");
+
+        assertThat(template.render(Map.of("posts", List.of()))).isEqualTo("記事はありません");
+        assertThat(template.render(Map.of())).isEqualTo("記事はありません");
+    }
+
+    @Test
+    @DisplayName("ネストの深さが上限を超えるとエラーになること")
+    void shouldRejectTooDeepNesting() {
+        String deep = "{{#if a}}".repeat(TemplateCompiler.MAX_NESTING_DEPTH + 1)
+            + "{{/if}}".repeat(TemplateCompiler.MAX_NESTING_DEPTH + 1);
+        String allowed = "{{#if a}}".repeat(TemplateCompiler.MAX_NESTING_DEPTH)
+            + "x" + "{{/if}}".repeat(TemplateCompiler.MAX_NESTING_DEPTH);
+
+        assertThatThrownBy(() -> TemplateCompiler.compile("deep", deep))
+            .isInstanceOf(TemplateException.class)
+            .hasMessageContaining("ネストが深すぎます");
+        assertThat(TemplateCompiler.compile("deep", allowed).render(Map.of("a", true))).isEqualTo("x");
+    }
+
+    @Test
+    @DisplayName("引用符内の区切り文字を含むフィルターチェーンを解析できること")
+    void shouldParseFilterChainsWithQuotedArguments() {
+        TemplateNode.Variable variable = TemplateCompiler.parseVariable("post.date | date:'yyyy|MM:dd, HH' | slugify");
+
+        assertThat(variable.path()).containsExactly("post", "date");
+        assertThat(variable.filters()).containsExactly(
+            new TemplateNode.FilterCall("date", List.of("yyyy|MM:dd, HH")),
+            new TemplateNode.FilterCall("slugify", List.of())
+        );
+
+        CompiledTemplate template = TemplateCompiler.compile("post", "{{ date | date:'yyyy/MM/dd' }}");
+        assertThat(template.render(Map.of("date", LocalDateTime.of(2024, 3, 5, 10, 0)))).isEqualTo("2024/03/05");
+    }
+
+    @Test
+    @DisplayName("タグとして成立しない記述はそのまま出力されること")
+    void shouldKeepNonTagTextAsIs() {
+        CompiledTemplate template = TemplateCompiler.compile("base",
+            "{% block content %}{% endblock %} {{}} {{ open");
+
+        assertThat(template.render(Map.of())).isEqualTo("{% block content %}{% endblock %} {{}} {{ open");
+    }
+
+    @Test
+    @DisplayName("パーシャル参照を収集すること")
+    void shouldCollectPartials() {
+        CompiledTemplate template = TemplateCompiler.compile("page", "{{> header}}{{#if x}}{{> footer }}{{/if}}");
+
+        assertThat(template.partials()).containsExactly("header", "footer");
+    }
+
+    @Test
+    @DisplayName("閉じられていないブロックや対応しない終了タグはエラーになること")
+    void shouldRejectUnbalancedBlocks() {
+        assertThatThrownBy(() -> TemplateCompiler.compile("broken", "{{#if a}}never closed"))
+            .isInstanceOf(TemplateException.class)
+            .hasMessageContaining("broken");
+        assertThatThrownBy(() -> TemplateCompiler.compile("broken", "{{#each a}}{{/if}}"))
+            .isInstanceOf(TemplateException.class);
+        assertThatThrownBy(() -> TemplateCompiler.compile("broken", "{{else}}"))
+            .isInstanceOf(TemplateException.class);
+    }
+
+    @Test
+    @DisplayName("パーシャルは呼び出し元のスコープで展開されること")
+    void shouldRenderPartialsInCallerScope() {
+        Map<String, CompiledTemplate> partials = Map.of(
+            "item", TemplateCompiler.compile("item", "<li>{{title}}@{{site.title}}</li>"),
+            "list", TemplateCompiler.compile("list", "<ul>{{#each posts}}{{> item}}{{/each}}</ul>")
+        );
+        CompiledTemplate template = TemplateCompiler.compile("page", "{{> list}}");
+
+        String html = template.render(Map.of(
+            "site", Map.of("title", "Blog"),
+            "posts", List.of(Map.of("title", "A"), Map.of("title", "B"))
+        ), partials::get);
+
+        assertThat(html).isEqualTo("<ul><li>A@Blog</li><li>B@Blog</li></ul>");
+        assertThat(template.render(Map.of())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("パーシャルの循環参照や存在しないパーシャルはエラーになること")
+    void shouldRejectCyclicAndMissingPartials() {
+        Map<String, CompiledTemplate> partials = Map.of(
+            "a", TemplateCompiler.compile("a", "A{{> b}}"),
+            "b", TemplateCompiler.compile("b", "B{{> a}}")
+        );
+        CompiledTemplate cyclic = TemplateCompiler.compile("page", "{{> a}}");
+        CompiledTemplate missing = TemplateCompiler.compile("page", "{{> footer}}");
+
+        assertThatThrownBy(() -> cyclic.render(Map.of(), partials::get))
+            .isInstanceOf(TemplateException.class)
+            .hasMessageContaining("a -> b -> a");
+        assertThatThrownBy(() -> missing.render(Map.of(), partials::get))
+            .isInstanceOf(TemplateException.class)
+            .hasMessageContaining("footer");
+    }
+
+    @Test
+    @DisplayName("フィルターチェーンを順に適用できること")
+    void shouldApplyChainedFilters() {
+        CompiledTemplate template = TemplateCompiler.compile("post",
+            "{{ post.publishedAt | date:'yyyy/MM' | slugify }} {{ post.title | slugify | upper }} {{ post.body | excerpt:5 }}");
+
+        String html = template.render(Map.of("post", Map.of(
+            "publishedAt", LocalDateTime.of(2024, 3, 5, 10, 0),
+            "title", "Hello World",
+            "body", "abcdefghij"
+        )));
+
+        assertThat(html).isEqualTo("2024-03 HELLO-WORLD abcde...");
+    }
+
+    @Test
+    @DisplayName("登録したフィルターの引数はコンパイル時に一度だけ束縛されること")
+    void shouldBindRegisteredFiltersOnceAtCompileTime() {
+        FilterRegistry registry = FilterRegistry.withBuiltins();
+        AtomicInteger binds = new AtomicInteger();
+        registry.register("wrap", arguments -> {
+            binds.incrementAndGet();
+            String tag = arguments.get(0);
+            return value -> "<" + tag + ">" + value + "</" + tag + ">";
+        });
+
+        CompiledTemplate template = TemplateCompiler.compile("list",
+            "{{#each items}}{{ this | wrap:'li' | unknown }}{{/each}}", registry);
+
+        assertThat(template.render(Map.of("items", List.of("a", "b", "c")))).isEqualTo("<li>a</li><li>b</li><li>c</li>");
+        assertThat(template.render(Map.of("items", List.of("d")))).isEqualTo("<li>d</li>");
+        assertThat(binds).hasValue(1);
+        assertThat(FilterRegistry.global().get("wrap")).isEmpty();
+    }
+}